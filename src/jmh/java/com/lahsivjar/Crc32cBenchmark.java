@@ -0,0 +1,87 @@
+package com.lahsivjar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+// Measures what hashing the transferred buffers costs per GB, every operation passes 1 GB through the transfer
+// buffers the way the copy loops do
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Crc32cBenchmark {
+
+    private static final long GIGABYTE = 1024L * 1024 * 1024;
+    private static final int CONTENT_SIZE = 64 * 1024 * 1024;
+
+    @Param({"2097152"})
+    public int bufferSize;
+
+    private ByteBuffer content;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final byte[] bytes = new byte[CONTENT_SIZE];
+        new Random(CONTENT_SIZE).nextBytes(bytes);
+        this.content = ByteBuffer.allocateDirect(CONTENT_SIZE);
+        this.content.put(bytes).flip();
+    }
+
+    // Baseline, touches every buffer without hashing it
+    @Benchmark
+    public void none(Blackhole blackhole) {
+        forEachBuffer(data -> blackhole.consume(data.get(data.limit() - 1)));
+    }
+
+    @Benchmark
+    public long crc32c() {
+        final CRC32C crc32c = new CRC32C();
+        forEachBuffer(crc32c::update);
+        return crc32c.getValue();
+    }
+
+    @Benchmark
+    public long crc32() {
+        final CRC32 crc32 = new CRC32();
+        forEachBuffer(crc32::update);
+        return crc32.getValue();
+    }
+
+    @Benchmark
+    public byte[] md5() throws NoSuchAlgorithmException {
+        final MessageDigest md5 = MessageDigest.getInstance("MD5");
+        forEachBuffer(md5::update);
+        return md5.digest();
+    }
+
+    private void forEachBuffer(TransferProgress progress) {
+        for (long hashed = 0; hashed < GIGABYTE; hashed += CONTENT_SIZE) {
+            for (int offset = 0; offset < CONTENT_SIZE; offset += this.bufferSize) {
+                final ByteBuffer data = this.content.duplicate();
+                data.position(offset).limit(Math.min(CONTENT_SIZE, offset + this.bufferSize));
+                progress.update(data);
+            }
+        }
+    }
+}
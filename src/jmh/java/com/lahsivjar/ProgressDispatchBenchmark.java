@@ -0,0 +1,117 @@
+package com.lahsivjar;
+
+import org.apache.maven.wagon.events.TransferEvent;
+import org.apache.maven.wagon.events.TransferEventSupport;
+import org.apache.maven.wagon.events.TransferListener;
+import org.apache.maven.wagon.resource.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Measures reporting the progress of a 128 MB transfer read in 4 KB pieces, dispatching every piece the way the copy
+// loops used to compared to coalescing them. Run with -prof gc to compare the allocation rates.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProgressDispatchBenchmark {
+
+    private static final int TRANSFER_SIZE = 128 * 1024 * 1024;
+    private static final int READ_SIZE = 4 * 1024;
+
+    @Param({"true", "false"})
+    public boolean listener;
+
+    private final LongAdder transferred = new LongAdder();
+    private final ByteBuffer read = ByteBuffer.allocateDirect(READ_SIZE);
+    private TransferEventSupport support;
+    private TransferEvent event;
+    private BufferPool buffers;
+    private volatile String progressLine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.support = new TransferEventSupport();
+        if (this.listener) {
+            this.support.addTransferListener(new CountingListener());
+        }
+        this.event = new TransferEvent(new GcpStorageWagon(), new Resource("artifact.jar"),
+                TransferEvent.TRANSFER_PROGRESS, TransferEvent.REQUEST_GET);
+        this.buffers = new BufferPool(GcpStorageWagon.DEFAULT_TRANSFER_BUFFER_SIZE, 1, false);
+    }
+
+    // Copies every piece to a heap buffer and fires it, as the copy loops did before
+    @Benchmark
+    public long perRead() {
+        final ByteBuffer scratch = this.buffers.acquire();
+        try {
+            for (int transferred = 0; transferred < TRANSFER_SIZE; transferred += READ_SIZE) {
+                final ByteBuffer source = this.read.duplicate();
+                synchronized (this.event) {
+                    source.get(scratch.array(), 0, READ_SIZE);
+                    this.support.fireTransferProgress(this.event, scratch.array(), READ_SIZE);
+                }
+            }
+        } finally {
+            this.buffers.release(scratch);
+        }
+        return this.transferred.sum();
+    }
+
+    @Benchmark
+    public long coalesced() {
+        try (ProgressDispatcher dispatcher = new ProgressDispatcher(this.event,
+                this.listener ? this.support::fireTransferProgress : null, this.buffers, 100)) {
+            for (int transferred = 0; transferred < TRANSFER_SIZE; transferred += READ_SIZE) {
+                dispatcher.update(this.read);
+            }
+        }
+        return this.transferred.sum();
+    }
+
+    // Formats the progress line on every event like the console transfer listener of Maven does
+    private final class CountingListener implements TransferListener {
+
+        @Override
+        public void transferInitiated(TransferEvent transferEvent) {
+        }
+
+        @Override
+        public void transferStarted(TransferEvent transferEvent) {
+        }
+
+        @Override
+        public void transferProgress(TransferEvent transferEvent, byte[] buffer, int length) {
+            transferred.add(length);
+            progressLine = String.format("Progress (1): %s/%d kB", transferEvent.getResource().getName(),
+                    transferred.sum() / 1024);
+        }
+
+        @Override
+        public void transferCompleted(TransferEvent transferEvent) {
+        }
+
+        @Override
+        public void transferError(TransferEvent transferEvent) {
+        }
+
+        @Override
+        public void debug(String message) {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import org.apache.maven.wagon.WagonException;
+import org.apache.maven.wagon.repository.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+// Compares the ways a small file can be uploaded: read into a fresh array that the client hashes as put used to, read
+// into a pooled array hashed with the intrinsic CRC32C, and streamed through a resumable upload. The in-memory storage answers every request at once, so this measures the
+// client side cost only, a resumable upload costs at least one more round trip to GCS on top. Run with -prof gc.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmallUploadBenchmark {
+
+    private static final String BUCKET = "benchmark-bucket";
+
+    @Param({"4096", "65536", "1048576", "4194304"})
+    public int fileSize;
+
+    private Path workDir;
+    private File source;
+    private Storage storage;
+    private BlobInfo blobInfo;
+    private BufferPool buffers;
+    private GcpStorageWagon singleShotWagon;
+    private GcpStorageWagon streamingWagon;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, WagonException {
+        this.workDir = Files.createTempDirectory("small-upload-benchmark");
+        final byte[] content = new byte[this.fileSize];
+        new Random(this.fileSize).nextBytes(content);
+        this.source = Files.write(this.workDir.resolve("artifact.pom"), content).toFile();
+
+        this.storage = LocalStorageHelper.getOptions().getService();
+        this.blobInfo = BlobInfo.newBuilder(BUCKET, "direct/artifact.pom").build();
+        this.buffers = new BufferPool(this.fileSize, 4, false);
+
+        final Repository repository = new Repository("benchmark", "gs://benchmark-project#" + BUCKET + "/repository");
+        this.singleShotWagon = new GcpStorageWagon(this.storage);
+        this.singleShotWagon.setSingleShotUploadThreshold(this.fileSize);
+        this.singleShotWagon.connect(repository);
+        this.streamingWagon = new GcpStorageWagon(this.storage);
+        this.streamingWagon.setSingleShotUploadThreshold(0);
+        this.streamingWagon.connect(repository);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, WagonException {
+        this.singleShotWagon.disconnect();
+        this.streamingWagon.disconnect();
+        Files.deleteIfExists(this.source.toPath());
+        Files.deleteIfExists(this.workDir);
+    }
+
+    @Benchmark
+    public Object readAllBytes() throws IOException {
+        return this.storage.create(this.blobInfo, Files.readAllBytes(this.source.toPath()));
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public Object pooledRead() throws IOException {
+        final ByteBuffer buffer = this.buffers.acquire();
+        try (FileChannel input = FileChannel.open(this.source.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (input.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            final CRC32C crc32c = new CRC32C();
+            crc32c.update(buffer.duplicate());
+            return this.storage.create(this.blobInfo.toBuilder().setCrc32c(Checksums.encode(crc32c.getValue())).build(),
+                    new ByteArrayInputStream(buffer.array(), 0, buffer.limit()), Storage.BlobWriteOption.crc32cMatch());
+        } finally {
+            this.buffers.release(buffer);
+        }
+    }
+
+    @Benchmark
+    public void singleShotPut() throws WagonException {
+        this.singleShotWagon.put(this.source, "uploads/artifact.pom");
+    }
+
+    @Benchmark
+    public void streamedPut() throws WagonException {
+        this.streamingWagon.put(this.source, "uploads/artifact.pom");
+    }
+}
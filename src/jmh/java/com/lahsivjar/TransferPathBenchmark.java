@@ -0,0 +1,218 @@
+package com.lahsivjar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares the original stream based copy loops of put and get with the channel based transfer path
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferPathBenchmark {
+
+    // Buffer size used by the original implementation
+    private static final int LEGACY_BUFFER_SIZE = 4096;
+
+    @Param({"67108864"})
+    public int fileSize;
+
+    @Param({"262144", "2097152", "8388608"})
+    public int bufferSize;
+
+    private Path source;
+    private Path destination;
+    private byte[] remoteContent;
+    private BufferPool buffers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.remoteContent = new byte[this.fileSize];
+        new Random(this.fileSize).nextBytes(this.remoteContent);
+        this.source = Files.createTempFile("transfer-benchmark", ".src");
+        Files.write(this.source, this.remoteContent);
+        this.destination = Files.createTempFile("transfer-benchmark", ".dst");
+        this.buffers = new BufferPool(this.bufferSize, 4, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.source);
+        Files.deleteIfExists(this.destination);
+    }
+
+    @Benchmark
+    public long legacyUpload(Blackhole blackhole) throws IOException {
+        final ChunkingSink sink = new ChunkingSink(this.bufferSize);
+        try (InputStream input = new FileInputStream(this.source.toFile())) {
+            final byte[] buffer = new byte[LEGACY_BUFFER_SIZE];
+            int limit;
+            while ((limit = input.read(buffer)) >= 0) {
+                sink.write(ByteBuffer.wrap(buffer, 0, limit));
+                blackhole.consume(buffer);
+            }
+        }
+        return sink.flushed;
+    }
+
+    @Benchmark
+    public long channelUpload(Blackhole blackhole) throws IOException {
+        final ChunkingSink sink = new ChunkingSink(this.bufferSize);
+        final ByteBuffer buffer = this.buffers.acquire();
+        try (FileChannel input = FileChannel.open(this.source, StandardOpenOption.READ)) {
+            ChannelTransfers.copy(input, sink, buffer, blackhole::consume);
+        } finally {
+            this.buffers.release(buffer);
+        }
+        return sink.flushed;
+    }
+
+    @Benchmark
+    public long mappedUpload(Blackhole blackhole) throws IOException {
+        final ChunkingSink sink = new ChunkingSink(this.bufferSize);
+        try (FileChannel input = FileChannel.open(this.source, StandardOpenOption.READ)) {
+            ChannelTransfers.copyMapped(input, sink, this.bufferSize, blackhole::consume);
+        }
+        return sink.flushed;
+    }
+
+    @Benchmark
+    public long legacyDownload(Blackhole blackhole) throws IOException {
+        final ReadableByteChannel reader = new ChunkedSource(this.remoteContent, this.bufferSize);
+        long transferred = 0;
+        try (OutputStream outputStream = new FileOutputStream(this.destination.toFile())) {
+            final WritableByteChannel channel = Channels.newChannel(outputStream);
+            final ByteBuffer bytes = ByteBuffer.allocate(LEGACY_BUFFER_SIZE);
+            int limit;
+            while ((limit = reader.read(bytes)) > 0) {
+                bytes.flip();
+                channel.write(bytes);
+                blackhole.consume(bytes.array());
+                transferred += limit;
+                bytes.clear();
+            }
+        }
+        return transferred;
+    }
+
+    @Benchmark
+    public long channelDownload(Blackhole blackhole) throws IOException {
+        final ReadableByteChannel reader = new ChunkedSource(this.remoteContent, this.bufferSize);
+        final ByteBuffer buffer = this.buffers.acquire();
+        try (FileChannel output = FileChannel.open(this.destination, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return ChannelTransfers.copy(reader, output, buffer, blackhole::consume);
+        } finally {
+            this.buffers.release(buffer);
+        }
+    }
+
+    // Mimics the resumable upload channel which copies into its own chunk array and flushes every chunk
+    private static final class ChunkingSink implements WritableByteChannel {
+
+        private final byte[] chunk;
+        private int buffered;
+        private long flushed;
+
+        ChunkingSink(int chunkSize) {
+            this.chunk = new byte[chunkSize];
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            final int length = src.remaining();
+            while (src.hasRemaining()) {
+                final int count = Math.min(src.remaining(), this.chunk.length - this.buffered);
+                src.get(this.chunk, this.buffered, count);
+                this.buffered += count;
+                if (this.buffered == this.chunk.length) {
+                    this.flushed += this.buffered;
+                    this.buffered = 0;
+                }
+            }
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            this.flushed += this.buffered;
+        }
+    }
+
+    // Mimics the blob read channel which fetches a chunk per request and hands it out from a byte array
+    private static final class ChunkedSource implements ReadableByteChannel {
+
+        private final byte[] content;
+        private final int chunkSize;
+        private int position;
+        private byte[] chunk = new byte[0];
+        private int chunkPosition;
+
+        ChunkedSource(byte[] content, int chunkSize) {
+            this.content = content;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (this.chunkPosition == this.chunk.length) {
+                if (this.position == this.content.length) {
+                    return -1;
+                }
+                final int length = Math.min(Math.max(dst.remaining(), this.chunkSize), this.content.length - this.position);
+                this.chunk = new byte[length];
+                System.arraycopy(this.content, this.position, this.chunk, 0, length);
+                this.position += length;
+                this.chunkPosition = 0;
+            }
+            final int count = Math.min(dst.remaining(), this.chunk.length - this.chunkPosition);
+            dst.put(this.chunk, this.chunkPosition, count);
+            this.chunkPosition += count;
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+}
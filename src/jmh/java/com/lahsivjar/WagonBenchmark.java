@@ -0,0 +1,175 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import org.apache.maven.wagon.WagonException;
+import org.apache.maven.wagon.repository.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Per call cost of the wagon operations against the in-memory LocalStorageHelper, optionally with a fixed latency
+// added to every storage call to emulate round trips to GCS. The metadata cache is disabled, so that every invocation
+// pays for its lookups as the first one of a build does, the cached benchmarks measure the lookups it saves. Run with
+// -prof gc for allocation rates.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WagonBenchmark {
+
+    private static final String PROJECT_ID = "benchmark-project";
+    private static final String BUCKET = "benchmark-bucket";
+    private static final String BASE_DIR = "repository/";
+    private static final String SMALL_ARTIFACT = "com/lahsivjar/small/1.0/small-1.0.pom";
+    private static final String LARGE_ARTIFACT = "com/lahsivjar/large/1.0/large-1.0.jar";
+    private static final String LISTED_PREFIX = "com/lahsivjar/listed/";
+    private static final int LISTED_FILES = 100;
+    private static final int DIRECTORY_FILES = 32;
+
+    // Zero benchmarks the wagon against the in-memory storage alone
+    @Param({"0", "20"})
+    public long latencyMillis;
+
+    @Param({"4096"})
+    public int smallFileSize;
+
+    @Param({"8388608"})
+    public int largeFileSize;
+
+    private GcpStorageWagon wagon;
+    private GcpStorageWagon cachedWagon;
+    private Path workDir;
+    private File smallFile;
+    private File largeFile;
+    private File directory;
+    private File destination;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, WagonException {
+        this.workDir = Files.createTempDirectory("wagon-benchmark");
+        this.smallFile = randomFile(this.workDir.resolve("small.pom"), this.smallFileSize);
+        this.largeFile = randomFile(this.workDir.resolve("large.jar"), this.largeFileSize);
+        this.directory = Files.createDirectories(this.workDir.resolve("site").resolve("nested")).getParent().toFile();
+        for (int i = 0; i < DIRECTORY_FILES; i++) {
+            final Path parent = i % 2 == 0 ? this.directory.toPath() : this.directory.toPath().resolve("nested");
+            randomFile(parent.resolve("page-" + i + ".html"), this.smallFileSize);
+        }
+        this.destination = this.workDir.resolve("downloads").resolve("artifact").toFile();
+
+        // The fake storage is not thread safe and putDirectory uploads concurrently
+        final Storage storage = SynchronizedStorage.wrap(LocalStorageHelper.getOptions().getService(), 0);
+        final byte[] small = Files.readAllBytes(this.smallFile.toPath());
+        storage.create(BlobInfo.newBuilder(BUCKET, BASE_DIR + SMALL_ARTIFACT).build(), small);
+        storage.create(BlobInfo.newBuilder(BUCKET, BASE_DIR + LARGE_ARTIFACT).build(),
+                Files.readAllBytes(this.largeFile.toPath()));
+        for (int i = 0; i < LISTED_FILES; i++) {
+            storage.create(BlobInfo.newBuilder(BUCKET, BASE_DIR + LISTED_PREFIX + "file-" + i).build(), small);
+        }
+
+        final Storage benchmarked = this.latencyMillis > 0
+                ? SynchronizedStorage.wrap(storage, this.latencyMillis) : storage;
+        final Repository repository = new Repository("benchmark",
+                String.format("gs://%s#%s/%s", PROJECT_ID, BUCKET, BASE_DIR));
+        this.wagon = new GcpStorageWagon(benchmarked);
+        this.wagon.setMetadataCacheSize(0);
+        this.wagon.connect(repository);
+        this.cachedWagon = new GcpStorageWagon(benchmarked);
+        this.cachedWagon.connect(repository);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, WagonException {
+        this.wagon.disconnect();
+        this.cachedWagon.disconnect();
+        try (Stream<Path> paths = Files.walk(this.workDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void putSmall() throws WagonException {
+        this.wagon.put(this.smallFile, "uploads/small.pom");
+    }
+
+    @Benchmark
+    public void putLarge() throws WagonException {
+        this.wagon.put(this.largeFile, "uploads/large.jar");
+    }
+
+    @Benchmark
+    public File getSmall() throws WagonException {
+        this.wagon.get(SMALL_ARTIFACT, this.destination);
+        return this.destination;
+    }
+
+    @Benchmark
+    public File getLarge() throws WagonException {
+        this.wagon.get(LARGE_ARTIFACT, this.destination);
+        return this.destination;
+    }
+
+    @Benchmark
+    public boolean getIfNewer() throws WagonException {
+        return this.wagon.getIfNewer(SMALL_ARTIFACT, this.destination, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public boolean resourceExists() throws WagonException {
+        return this.wagon.resourceExists(SMALL_ARTIFACT);
+    }
+
+    @Benchmark
+    public boolean resourceMissing() throws WagonException {
+        return this.wagon.resourceExists("com/lahsivjar/missing/1.0/missing-1.0.pom");
+    }
+
+    @Benchmark
+    public boolean getIfNewerCached() throws WagonException {
+        return this.cachedWagon.getIfNewer(SMALL_ARTIFACT, this.destination, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public boolean resourceExistsCached() throws WagonException {
+        return this.cachedWagon.resourceExists(SMALL_ARTIFACT);
+    }
+
+    @Benchmark
+    public List<String> getFileList() throws WagonException {
+        return this.wagon.getFileList(LISTED_PREFIX);
+    }
+
+    @Benchmark
+    public void putDirectory() throws WagonException {
+        this.wagon.putDirectory(this.directory, "uploads/site");
+    }
+
+    private static File randomFile(Path path, int size) throws IOException {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Files.write(path, content).toFile();
+    }
+}
@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 abstract class AbstractWagon implements Wagon {
 
@@ -21,11 +22,14 @@ abstract class AbstractWagon implements Wagon {
     static final int DEFAULT_BUFFER_SIZE = 1024 * 4;
 
     private Repository repository;
+    private ProxyInfoProvider proxyInfoProvider;
     private int connectionTimeout = DEFAULT_CONNECTION_TIMEOUT;
     private int readTimeout = DEFAULT_READ_TIMEOUT;
     private boolean interactive = false;
     private final SessionEventSupport sessionEventSupport;
     private final TransferEventSupport transferEventSupport;
+    // TransferEventSupport cannot tell whether it has any listeners at all
+    private final AtomicInteger transferListeners = new AtomicInteger();
 
     AbstractWagon() {
         this.sessionEventSupport = new SessionEventSupport();
@@ -70,6 +74,7 @@ abstract class AbstractWagon implements Wagon {
     @Override
     public void connect(Repository source, AuthenticationInfo authenticationInfo, ProxyInfoProvider proxyInfoProvider) throws ConnectionException, AuthenticationException {
         this.repository = source;
+        this.proxyInfoProvider = proxyInfoProvider;
         fireSessionOpening();
         connectInternal();
         fireSessionOpened();
@@ -85,6 +90,7 @@ abstract class AbstractWagon implements Wagon {
         fireSessionDisconnecting();
         try {
             this.repository = null;
+            this.proxyInfoProvider = null;
             disconnectInternal();
         } catch (ConnectionException e) {
             fireSessionError(e);
@@ -97,6 +103,10 @@ abstract class AbstractWagon implements Wagon {
         return this.repository;
     }
 
+    ProxyInfoProvider getProxyInfoProvider() {
+        return this.proxyInfoProvider;
+    }
+
     @Override
     public void setTimeout(int timeoutValue) {
         this.connectionTimeout = timeoutValue;
@@ -134,12 +144,23 @@ abstract class AbstractWagon implements Wagon {
 
     @Override
     public void addTransferListener(TransferListener listener) {
-        this.transferEventSupport.addTransferListener(listener);
+        // The count follows the list of the event support, which ignores null and keeps duplicates
+        synchronized (this.transferEventSupport) {
+            if (listener != null) {
+                this.transferEventSupport.addTransferListener(listener);
+                this.transferListeners.incrementAndGet();
+            }
+        }
     }
 
     @Override
     public void removeTransferListener(TransferListener listener) {
-        this.transferEventSupport.removeTransferListener(listener);
+        synchronized (this.transferEventSupport) {
+            if (this.transferEventSupport.hasTransferListener(listener)) {
+                this.transferEventSupport.removeTransferListener(listener);
+                this.transferListeners.decrementAndGet();
+            }
+        }
     }
 
     @Override
@@ -147,6 +168,10 @@ abstract class AbstractWagon implements Wagon {
         return this.transferEventSupport.hasTransferListener(listener);
     }
 
+    boolean hasTransferListeners() {
+        return this.transferListeners.get() > 0;
+    }
+
     @Override
     public boolean isInteractive() {
         return this.interactive;
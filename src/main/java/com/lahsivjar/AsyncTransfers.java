@@ -0,0 +1,108 @@
+package com.lahsivjar;
+
+import org.apache.maven.wagon.WagonException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+// Runs blocking transfers on an executor and returns their futures. Submitting blocks while the maximum number of
+// transfers are in flight, the same way TransferBatch does, so that callers cannot queue up unbounded work. Cancelling
+// a future interrupts its transfer if it is already running.
+final class AsyncTransfers {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncTransfers.class);
+
+    interface Call<T> {
+        T call() throws WagonException;
+    }
+
+    private final Executor executor;
+    private final Semaphore permits;
+
+    AsyncTransfers(Executor executor, int maxInFlight) {
+        this.executor = executor;
+        this.permits = new Semaphore(Math.max(1, maxInFlight));
+    }
+
+    // Virtual threads cost next to nothing while a transfer waits on the network, they are only available from
+    // Java 21 on though
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.debug("Virtual threads are not available, transfers run on platform threads");
+            return null;
+        }
+    }
+
+    <T> CompletableFuture<T> submit(Call<T> call) {
+        try {
+            this.permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final CompletableFuture<T> interrupted = new CompletableFuture<>();
+            interrupted.completeExceptionally(e);
+            return interrupted;
+        }
+        final TransferFuture<T> future = new TransferFuture<>();
+        try {
+            this.executor.execute(() -> run(call, future));
+        } catch (RejectedExecutionException e) {
+            this.permits.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> void run(Call<T> call, TransferFuture<T> future) {
+        try {
+            // A future cancelled before its transfer started is done already
+            if (future.start()) {
+                future.complete(call.call());
+            }
+        } catch (WagonException | RuntimeException e) {
+            future.completeExceptionally(e);
+        } finally {
+            future.finish();
+            this.permits.release();
+        }
+    }
+
+    private static final class TransferFuture<T> extends CompletableFuture<T> {
+
+        private Thread runner;
+
+        private synchronized boolean start() {
+            if (isDone()) {
+                return false;
+            }
+            this.runner = Thread.currentThread();
+            return true;
+        }
+
+        // Clears an interrupt caused by cancelling, pooled threads must not carry it over to their next task
+        private synchronized void finish() {
+            if (this.runner != null) {
+                this.runner = null;
+                Thread.interrupted();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            synchronized (this) {
+                if (cancelled && mayInterruptIfRunning && this.runner != null) {
+                    this.runner.interrupt();
+                }
+            }
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageBatch;
+import com.google.cloud.storage.StorageBatchResult;
+import com.google.cloud.storage.StorageException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Sends metadata lookups as GCS batch requests. Concurrent single lookups are collected for a short window, or until
+// the batch is full, and answered from one request. Bulk lookups are split into full batches right away.
+final class BlobMetadataBatcher {
+
+    // Maximum number of calls GCS accepts in a single batch request
+    static final int MAX_BATCH_SIZE = 100;
+
+    // The client is only created once the first lookup is made
+    private final Supplier<Storage> storage;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private List<Lookup> pending = new ArrayList<>();
+
+    // A window of zero or less sends single lookups straight away without batching
+    BlobMetadataBatcher(Supplier<Storage> storage, int maxBatchSize, long windowMillis) {
+        this.storage = storage;
+        this.maxBatchSize = Math.max(1, Math.min(maxBatchSize, MAX_BATCH_SIZE));
+        this.windowMillis = windowMillis;
+    }
+
+    // Returns null if the blob does not exist
+    Blob get(BlobId blobId) {
+        if (this.windowMillis <= 0) {
+            return this.storage.get().get(blobId);
+        }
+
+        final Lookup lookup = new Lookup(blobId);
+        final boolean leader;
+        List<Lookup> full = null;
+        synchronized (this) {
+            this.pending.add(lookup);
+            leader = this.pending.size() == 1;
+            if (this.pending.size() >= this.maxBatchSize) {
+                full = drainPending();
+            }
+        }
+
+        if (full != null) {
+            submit(full);
+        } else if (leader) {
+            // The first caller of a batch waits for the window to collect others and then sends whatever is pending,
+            // unless a full batch took its lookup along in the meantime
+            try {
+                lookup.result.get(this.windowMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // Window elapsed, or the lookup failed and is rethrown by join
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!lookup.result.isDone()) {
+                final List<Lookup> batch;
+                synchronized (this) {
+                    batch = drainPending();
+                }
+                if (!batch.isEmpty()) {
+                    submit(batch);
+                }
+            }
+        }
+        return join(lookup);
+    }
+
+    // Results are in the order of the given ids, with null for blobs that do not exist
+    List<Blob> getAll(List<BlobId> blobIds) {
+        final List<Lookup> lookups = new ArrayList<>(blobIds.size());
+        blobIds.forEach(id -> lookups.add(new Lookup(id)));
+        for (int start = 0; start < lookups.size(); start += this.maxBatchSize) {
+            submit(lookups.subList(start, Math.min(lookups.size(), start + this.maxBatchSize)));
+        }
+
+        final List<Blob> blobs = new ArrayList<>(lookups.size());
+        for (Lookup lookup : lookups) {
+            blobs.add(join(lookup));
+        }
+        return blobs;
+    }
+
+    private List<Lookup> drainPending() {
+        final List<Lookup> drained = this.pending;
+        this.pending = new ArrayList<>();
+        return drained;
+    }
+
+    private void submit(List<Lookup> lookups) {
+        try {
+            final StorageBatch batch = this.storage.get().batch();
+            final List<StorageBatchResult<Blob>> results = new ArrayList<>(lookups.size());
+            lookups.forEach(lookup -> results.add(batch.get(lookup.blobId)));
+            batch.submit();
+
+            for (int i = 0; i < lookups.size(); i++) {
+                try {
+                    lookups.get(i).result.complete(results.get(i).get());
+                } catch (StorageException e) {
+                    lookups.get(i).result.completeExceptionally(e);
+                }
+            }
+        } catch (RuntimeException e) {
+            lookups.forEach(lookup -> lookup.result.completeExceptionally(e));
+        }
+    }
+
+    private static Blob join(Lookup lookup) {
+        try {
+            return lookup.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Lookup {
+
+        private final BlobId blobId;
+        private final CompletableFuture<Blob> result = new CompletableFuture<>();
+
+        private Lookup(BlobId blobId) {
+            this.blobId = blobId;
+        }
+    }
+}
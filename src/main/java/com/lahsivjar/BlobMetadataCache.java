@@ -0,0 +1,135 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// Session scoped cache of blob metadata so that resourceExists, getIfNewer and get on the same artifact cost a single
+// metadata request. Missing blobs are cached as well, entries are evicted least recently used first.
+final class BlobMetadataCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<BlobId, Entry> entries;
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    // A ttl of zero or less keeps entries until they are evicted or invalidated
+    BlobMetadataCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis > 0 ? ttlMillis * 1_000_000 : 0;
+        this.entries = new LinkedHashMap<BlobId, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BlobId, Entry> eldest) {
+                return size() > BlobMetadataCache.this.maxEntries;
+            }
+        };
+    }
+
+    // The loader returns null for blobs that do not exist, it is called outside of the lock
+    Blob get(BlobId blobId, Function<BlobId, Blob> loader) {
+        if (this.maxEntries <= 0) {
+            return loader.apply(blobId);
+        }
+        final long invalidationsBeforeLoad;
+        synchronized (this) {
+            final Entry entry = this.entries.get(blobId);
+            if (entry != null && !entry.isExpired()) {
+                this.hits++;
+                return entry.blob;
+            }
+            this.misses++;
+            invalidationsBeforeLoad = this.invalidations;
+        }
+        final Blob blob = loader.apply(blobId);
+        synchronized (this) {
+            // Metadata loaded while an upload invalidated entries may already be stale
+            if (invalidationsBeforeLoad == this.invalidations) {
+                this.entries.put(blobId, new Entry(blob, this.ttlNanos > 0 ? System.nanoTime() + this.ttlNanos : 0));
+            }
+        }
+        return blob;
+    }
+
+    // Answers what it can from the cache and loads all the misses with a single call of the loader, which returns
+    // the blobs in the order of the ids it is given
+    Map<BlobId, Blob> getAll(Collection<BlobId> blobIds, Function<List<BlobId>, List<Blob>> loader) {
+        final Map<BlobId, Blob> blobs = new HashMap<>();
+        final List<BlobId> missing = new ArrayList<>();
+        final long invalidationsBeforeLoad;
+        synchronized (this) {
+            for (BlobId blobId : blobIds) {
+                final Entry entry = this.maxEntries > 0 ? this.entries.get(blobId) : null;
+                if (entry != null && !entry.isExpired()) {
+                    this.hits++;
+                    blobs.put(blobId, entry.blob);
+                } else {
+                    this.misses++;
+                    missing.add(blobId);
+                }
+            }
+            invalidationsBeforeLoad = this.invalidations;
+        }
+        if (missing.isEmpty()) {
+            return blobs;
+        }
+
+        final List<Blob> loaded = loader.apply(missing);
+        synchronized (this) {
+            final boolean store = this.maxEntries > 0 && invalidationsBeforeLoad == this.invalidations;
+            final long expiresAt = this.ttlNanos > 0 ? System.nanoTime() + this.ttlNanos : 0;
+            for (int i = 0; i < missing.size(); i++) {
+                blobs.put(missing.get(i), loaded.get(i));
+                if (store) {
+                    this.entries.put(missing.get(i), new Entry(loaded.get(i), expiresAt));
+                }
+            }
+        }
+        return blobs;
+    }
+
+    synchronized void invalidate(BlobId blobId) {
+        this.invalidations++;
+        this.entries.remove(blobId);
+    }
+
+    synchronized void invalidateAll() {
+        this.invalidations++;
+        this.entries.clear();
+    }
+
+    synchronized int size() {
+        return this.entries.size();
+    }
+
+    synchronized long hits() {
+        return this.hits;
+    }
+
+    synchronized long misses() {
+        return this.misses;
+    }
+
+    private static final class Entry {
+
+        private final Blob blob;
+        private final long expiresAt;
+
+        private Entry(Blob blob, long expiresAt) {
+            this.blob = blob;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return this.expiresAt != 0 && System.nanoTime() - this.expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.lahsivjar;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+final class BufferPool {
+
+    // Shared by all wagons of the process, so that wagons connecting per transfer reuse the buffers of the previous
+    // ones and the buffers held never grow with the number of wagons
+    private static final ConcurrentMap<String, BufferPool> SHARED = new ConcurrentHashMap<>();
+
+    private final int bufferSize;
+    private final boolean direct;
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    BufferPool(int bufferSize, int maxPooled, boolean direct) {
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+    }
+
+    // The first caller of a size and kind decides how many buffers are pooled
+    static BufferPool shared(int bufferSize, int maxPooled, boolean direct) {
+        return SHARED.computeIfAbsent((direct ? "direct-" : "heap-") + bufferSize,
+                k -> new BufferPool(bufferSize, maxPooled, direct));
+    }
+
+    ByteBuffer acquire() {
+        final ByteBuffer buffer = this.buffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        return this.direct ? ByteBuffer.allocateDirect(this.bufferSize) : ByteBuffer.allocate(this.bufferSize);
+    }
+
+    // Buffers beyond the pool capacity are left to the garbage collector
+    void release(ByteBuffer buffer) {
+        if (buffer.capacity() == this.bufferSize && buffer.isDirect() == this.direct) {
+            buffer.clear();
+            this.buffers.offer(buffer);
+        }
+    }
+
+    int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    int pooled() {
+        return this.buffers.size();
+    }
+}
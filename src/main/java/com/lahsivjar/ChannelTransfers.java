@@ -0,0 +1,89 @@
+package com.lahsivjar;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+final class ChannelTransfers {
+
+    // Size of the file region mapped at once by memory mapped copies
+    static final long MAPPED_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private ChannelTransfers() {
+
+    }
+
+    // Fills the buffer before every write so the target sees full sized chunks regardless of how the source reads
+    static long copy(ReadableByteChannel source, WritableByteChannel target, ByteBuffer buffer,
+                     TransferProgress progress) throws IOException {
+        long transferred = 0;
+        boolean endOfStream = false;
+        while (!endOfStream) {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (source.read(buffer) < 0) {
+                    endOfStream = true;
+                    break;
+                }
+            }
+            buffer.flip();
+            if (!buffer.hasRemaining()) {
+                break;
+            }
+            writeFully(target, buffer);
+            buffer.rewind();
+            progress.update(buffer);
+            transferred += buffer.limit();
+        }
+        return transferred;
+    }
+
+    // Writes the file straight from the page cache, sliceSize bounds how much is handed to the target per write
+    static long copyMapped(FileChannel source, WritableByteChannel target, int sliceSize,
+                           TransferProgress progress) throws IOException {
+        final long size = source.size();
+        long position = 0;
+        while (position < size) {
+            final long windowSize = Math.min(MAPPED_WINDOW_SIZE, size - position);
+            final MappedByteBuffer window = source.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+            while (window.hasRemaining()) {
+                final ByteBuffer slice = window.slice();
+                slice.limit(Math.min(sliceSize, window.remaining()));
+                writeFully(target, slice);
+                slice.rewind();
+                progress.update(slice);
+                window.position(window.position() + slice.limit());
+            }
+            position += windowSize;
+        }
+        return size;
+    }
+
+    // An output stream over the channel that leaves it open when closed, for writers whose close commits what was
+    // written, such as the upload channels of the storage client
+    static OutputStream unclosedOutputStream(WritableByteChannel target) {
+        return new FilterOutputStream(Channels.newOutputStream(target)) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    static void writeFully(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+}
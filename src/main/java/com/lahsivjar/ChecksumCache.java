@@ -0,0 +1,80 @@
+package com.lahsivjar;
+
+import com.google.common.io.BaseEncoding;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Remembers the CRC32C of local files together with their size and modification time, so that deploying the same
+// large file again does not hash it again. The records are persisted as a properties file shared by builds.
+final class ChecksumCache {
+
+    private static final int CRC32C_BYTES = 4;
+
+    private final LocalFileRecords records;
+
+    ChecksumCache(Path file) {
+        this(new LocalFileRecords(file, ChecksumCache::isCrc32c));
+    }
+
+    private ChecksumCache(LocalFileRecords records) {
+        this.records = records;
+    }
+
+    // The cache of the file shared by all wagons of the process, read from disk only by the first of them
+    static ChecksumCache shared(Path file) throws IOException {
+        return new ChecksumCache(LocalFileRecords.shared(file, ChecksumCache::isCrc32c));
+    }
+
+    // Reads the file on its own, as another process would
+    static ChecksumCache load(Path file) throws IOException {
+        return new ChecksumCache(LocalFileRecords.load(file, ChecksumCache::isCrc32c));
+    }
+
+    // Returns the CRC32C in the encoding of the blob metadata, hashing the file unless it is unchanged since the
+    // last time
+    String crc32c(File source, ByteBuffer buffer) throws IOException {
+        final String key = source.getAbsolutePath();
+        final String cached = this.records.get(key, source);
+        if (cached != null) {
+            return cached;
+        }
+
+        final long size = source.length();
+        final long lastModified = source.lastModified();
+        final String crc32c;
+        try (FileChannel input = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            crc32c = Checksums.crc32c(input, buffer);
+        }
+        // A file modified while it was hashed is hashed again next time
+        if (source.length() == size && source.lastModified() == lastModified) {
+            this.records.put(key, source, size, lastModified, crc32c);
+        }
+        return crc32c;
+    }
+
+    // Returns the CRC32C recorded for the file, or null if it would have to be hashed
+    String cached(File source) {
+        return this.records.get(source.getAbsolutePath(), source);
+    }
+
+    int size() {
+        return this.records.size();
+    }
+
+    void save() throws IOException {
+        this.records.save();
+    }
+
+    private static boolean isCrc32c(String value) {
+        try {
+            return BaseEncoding.base64().decode(value).length == CRC32C_BYTES;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.Blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+
+// Keeps the content of checksum sidecars such as artifact.jar.sha1 as custom metadata of the blob they describe, so
+// that deploying and resolving them takes no transfer of its own. Replacing the blob drops its custom metadata, which
+// keeps a digest from outliving the content it was computed for.
+final class ChecksumSidecars {
+
+    private static final String[] ALGORITHMS = {"md5", "sha1", "sha256", "sha512"};
+    private static final String METADATA_PREFIX = "checksum-";
+    // Anything larger than a digest with a file name after it is not worth keeping in metadata
+    private static final int MAX_CONTENT_LENGTH = 1024;
+
+    private ChecksumSidecars() {
+    }
+
+    // Returns the algorithm of a sidecar resource, or null if the resource is not a sidecar
+    static String algorithm(String resource) {
+        final String name = resource.toLowerCase(Locale.ROOT);
+        for (String algorithm : ALGORITHMS) {
+            if (name.endsWith("." + algorithm) && name.length() > algorithm.length() + 1) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    // Name of the resource the sidecar of the given algorithm describes
+    static String described(String resource, String algorithm) {
+        return resource.substring(0, resource.length() - algorithm.length() - 1);
+    }
+
+    static String metadataKey(String algorithm) {
+        return METADATA_PREFIX + algorithm;
+    }
+
+    // Content of the sidecar kept on the described blob, or null if there is none
+    static String get(Blob blob, String algorithm) {
+        final Map<String, String> metadata = blob != null ? blob.getMetadata() : null;
+        return metadata != null ? metadata.get(metadataKey(algorithm)) : null;
+    }
+
+    // Returns the content of a sidecar file, or null if it is too large or not plain ASCII to be kept in metadata
+    static String read(File sidecar) throws IOException {
+        if (sidecar.length() > MAX_CONTENT_LENGTH) {
+            return null;
+        }
+        final byte[] content = Files.readAllBytes(sidecar.toPath());
+        for (byte b : content) {
+            if (b < 0) {
+                return null;
+            }
+        }
+        return new String(content, StandardCharsets.US_ASCII);
+    }
+}
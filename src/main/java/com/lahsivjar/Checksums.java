@@ -0,0 +1,123 @@
+package com.lahsivjar;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.CRC32C;
+
+// Checksums in the encoding GCS reports them in blob metadata
+final class Checksums {
+
+    // Reversed Castagnoli polynomial
+    private static final long CRC32C_POLYNOMIAL = 0x82F63B78L;
+
+    private Checksums() {
+    }
+
+    // Hashes the remaining content of the channel in a single pass through the buffer
+    static String crc32c(ReadableByteChannel input, ByteBuffer buffer) throws IOException {
+        final CRC32C crc32c = new CRC32C();
+        update(crc32c, input, buffer);
+        return encode(crc32c.getValue());
+    }
+
+    static void update(CRC32C crc32c, ReadableByteChannel input, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (input.read(buffer) >= 0) {
+            buffer.flip();
+            crc32c.update(buffer);
+            buffer.clear();
+        }
+    }
+
+    // Hashes the given number of bytes from the start of the file
+    static void update(CRC32C crc32c, FileChannel input, long length, ByteBuffer buffer) throws IOException {
+        long position = 0;
+        while (position < length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length - position));
+            final int read = input.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException(String.format("Failed to hash %d bytes, input ended at %d", length, position));
+            }
+            position += read;
+            buffer.flip();
+            crc32c.update(buffer);
+        }
+    }
+
+    // Hashes the transferred bytes on their way to the given progress
+    static TransferProgress crc32c(CRC32C crc32c, TransferProgress progress) {
+        return data -> {
+            crc32c.update(data.duplicate());
+            progress.update(data);
+        };
+    }
+
+    // GCS reports CRC32C as the base64 encoding of the big endian value
+    static String encode(long crc32c) {
+        return BaseEncoding.base64().encode(Ints.toByteArray((int) crc32c));
+    }
+
+    // Returns the CRC32C of two consecutive ranges from the CRC32C of each of them, the same way zlib combines CRC32.
+    // Lets ranges transferred in parallel be hashed independently.
+    static long combineCrc32c(long first, long second, long secondLength) {
+        if (secondLength <= 0) {
+            return first;
+        }
+        final long[] even = new long[32];
+        final long[] odd = new long[32];
+
+        // Operator for a single zero bit
+        odd[0] = CRC32C_POLYNOMIAL;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // Operators for two and four zero bits
+        square(even, odd);
+        square(odd, even);
+
+        // Apply the operators for the zero bytes of the second length to the first checksum
+        long crc = first;
+        long length = secondLength;
+        do {
+            square(even, odd);
+            if ((length & 1) != 0) {
+                crc = times(even, crc);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((length & 1) != 0) {
+                crc = times(odd, crc);
+            }
+            length >>= 1;
+        } while (length != 0);
+        return crc ^ second;
+    }
+
+    private static long times(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+// Stops calling a bucket that keeps failing with retryable errors, so that builds fail fast instead of every request
+// waiting out its retries. After the open time a single trial call decides whether the bucket is back.
+final class CircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final int HTTP_SERVICE_UNAVAILABLE = 503;
+    // Shared by all wagons of the process, the first wagon to use a bucket decides its settings
+    private static final ConcurrentMap<String, CircuitBreaker> BUCKETS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean open;
+    private boolean trialInFlight;
+
+    CircuitBreaker(String name, int failureThreshold, long openMillis, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    static CircuitBreaker forBucket(String bucket, int failureThreshold, long openMillis) {
+        return BUCKETS.computeIfAbsent(bucket,
+                b -> new CircuitBreaker(b, failureThreshold, openMillis, System::currentTimeMillis));
+    }
+
+    synchronized void acquire() {
+        if (!this.open) {
+            return;
+        }
+        if (this.trialInFlight || this.clock.getAsLong() - this.openedAt < this.openMillis) {
+            throw new StorageException(HTTP_SERVICE_UNAVAILABLE, String.format(
+                    "Circuit breaker for %s is open after %d failures", this.name, this.consecutiveFailures),
+                    new OpenException());
+        }
+        this.trialInFlight = true;
+    }
+
+    synchronized void onSuccess() {
+        if (this.open) {
+            LOGGER.info("Circuit breaker for {} closed", this.name);
+        }
+        this.consecutiveFailures = 0;
+        this.open = false;
+        this.trialInFlight = false;
+    }
+
+    // Failures that are not retryable, such as missing objects, say nothing about the health of the bucket
+    synchronized void onFailure(boolean retryable) {
+        if (!retryable) {
+            this.trialInFlight = false;
+            return;
+        }
+        this.consecutiveFailures++;
+        if (this.trialInFlight || (!this.open && this.consecutiveFailures >= this.failureThreshold)) {
+            if (!this.open) {
+                LOGGER.warn("Circuit breaker for {} opened after {} failures", this.name, this.consecutiveFailures);
+            }
+            this.open = true;
+            this.openedAt = this.clock.getAsLong();
+            this.trialInFlight = false;
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return this.open;
+    }
+
+    // Calls rejected by an open circuit breaker must not count as failures of the bucket themselves
+    static boolean isRejection(StorageException e) {
+        return e.getCause() instanceof OpenException;
+    }
+
+    // StorageException is final, so rejections are told apart by their cause
+    private static final class OpenException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private OpenException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.lahsivjar;
+
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32C;
+
+final class CompositeUploader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompositeUploader.class);
+
+    // Maximum number of source objects GCS accepts in a single compose request
+    static final int MAX_COMPOSE_SOURCES = 32;
+    // Parts are kept apart from the repository, so that parts left behind by a process that was killed can be
+    // removed by a lifecycle rule on the prefix
+    static final String PARTS_PREFIX = "gcp-storage-wagon-parts/";
+
+    private final Storage storage;
+    private final Executor executor;
+    private final int parts;
+    private final BufferPool buffers;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+
+    // The circuit breaker is optional
+    CompositeUploader(Storage storage, Executor executor, int parts, BufferPool buffers, RetryPolicy retryPolicy,
+                      CircuitBreaker circuitBreaker) {
+        this.storage = storage;
+        this.executor = executor;
+        this.parts = Math.max(1, Math.min(parts, MAX_COMPOSE_SOURCES));
+        this.buffers = buffers;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    // Uploads the parts of the source file as temporary objects concurrently and composes them into another temporary
+    // object, which is copied over the target once GCS reports the CRC32C the parts computed while uploading. A
+    // corrupted upload never replaces the target. Temporary objects are always removed, whether the upload succeeds
+    // or not.
+    Blob upload(Path source, BlobInfo target, TransferProgress progress) throws IOException {
+        final long size = Files.size(source);
+        final long partSize = Math.max(1, (size + this.parts - 1) / this.parts);
+        final String uploadPrefix = String.format("%s%s/%s", PARTS_PREFIX, UUID.randomUUID(), target.getName());
+        final String partPrefix = uploadPrefix + ".part-";
+        final BlobId composedId = BlobId.of(target.getBucket(), uploadPrefix);
+        final List<BlobId> temporaryIds = new ArrayList<>(this.parts + 1);
+
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            final List<CompletableFuture<Void>> uploads = new ArrayList<>(this.parts);
+            final List<CRC32C> checksums = new ArrayList<>(this.parts);
+            final List<Long> lengths = new ArrayList<>(this.parts);
+            for (long offset = 0; offset < size; offset += partSize) {
+                final long partOffset = offset;
+                final long partLength = Math.min(partSize, size - offset);
+                final BlobId partId = BlobId.of(target.getBucket(), partPrefix + temporaryIds.size());
+                final CRC32C checksum = new CRC32C();
+                temporaryIds.add(partId);
+                checksums.add(checksum);
+                lengths.add(partLength);
+                uploads.add(CompletableFuture.runAsync(() -> uploadPart(channel, partOffset, partLength, partId,
+                        Checksums.crc32c(checksum, progress)), this.executor));
+            }
+            CompletableFuture.allOf(uploads.toArray(new CompletableFuture<?>[0])).join();
+
+            final List<String> sources = new ArrayList<>(temporaryIds.size());
+            temporaryIds.forEach(p -> sources.add(p.getName()));
+            // Removed with the parts, whatever the compose request ends with
+            temporaryIds.add(composedId);
+            final Blob composed = withRetries(() -> this.storage.compose(Storage.ComposeRequest.newBuilder()
+                    .addSource(sources)
+                    .setTarget(BlobInfo.newBuilder(composedId).build())
+                    .build()));
+
+            long crc32c = 0;
+            for (int i = 0; i < checksums.size(); i++) {
+                crc32c = Checksums.combineCrc32c(crc32c, checksums.get(i).getValue(), lengths.get(i));
+            }
+            final String expected = Checksums.encode(crc32c);
+            if (composed != null && composed.getCrc32c() != null && !expected.equals(composed.getCrc32c())) {
+                throw new IOException(String.format("Composed %s has CRC32C %s, expected %s", target.getName(),
+                        composed.getCrc32c(), expected));
+            }
+            return withRetries(() -> this.storage.copy(Storage.CopyRequest.newBuilder()
+                    .setSource(composedId)
+                    .setTarget(target)
+                    .build()).getResult());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            } else if (e.getCause() instanceof StorageException) {
+                throw (StorageException) e.getCause();
+            }
+            throw new IOException(String.format("Failed to upload parts of %s", source), e.getCause());
+        } finally {
+            deleteTemporary(temporaryIds);
+        }
+    }
+
+    private void uploadPart(FileChannel channel, long offset, long length, BlobId partId, TransferProgress progress) {
+        final ByteBuffer buffer = this.buffers.acquire();
+        final long end = offset + length;
+        try (WriteChannel writer = new RetryingWriteChannel(
+                withRetries(() -> this.storage.writer(BlobInfo.newBuilder(partId).build())),
+                this.retryPolicy, this.circuitBreaker)) {
+            writer.setChunkSize(this.buffers.getBufferSize());
+            long position = offset;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                final int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException(String.format("Source ended at %d while reading part %s", position, partId));
+                }
+                position += read;
+                buffer.flip();
+                ChannelTransfers.writeFully(writer, buffer);
+                buffer.rewind();
+                progress.update(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.buffers.release(buffer);
+        }
+    }
+
+    private void deleteTemporary(List<BlobId> temporaryIds) {
+        for (BlobId temporaryId : temporaryIds) {
+            try {
+                withRetries(() -> this.storage.delete(temporaryId));
+            } catch (StorageException e) {
+                LOGGER.warn("Failed to delete temporary composite object {}", temporaryId.getName(), e);
+            }
+        }
+    }
+
+    private <T> T withRetries(RetryPolicy.Operation<T> operation) {
+        return this.retryPolicy.call(this.circuitBreaker, operation);
+    }
+}
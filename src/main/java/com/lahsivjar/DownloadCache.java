@@ -0,0 +1,260 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.BlobId;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Local cache of downloaded blobs shared by builds on the same machine. Entries are keyed by bucket, name and
+// generation, so an entry never changes once written. Entries are published with an atomic rename, which keeps
+// readers lock free, while storing and evicting are serialized across processes with a file lock. The total size of
+// the entries is kept next to them, so that only a store taking the cache past its size limit walks the entries to
+// evict the least recently used ones.
+final class DownloadCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadCache.class);
+
+    private static final String ENTRIES_DIRECTORY = "entries";
+    private static final String LOCK_FILE = "cache.lock";
+    private static final String SIZE_FILE = "cache.size";
+    // File locks are held per process, threads of one process are serialized on these
+    private static final ConcurrentMap<Path, Object> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path root;
+    private final Path entries;
+    private final long maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    DownloadCache(Path root, long maxSize) {
+        this.root = root.toAbsolutePath().normalize();
+        this.entries = this.root.resolve(ENTRIES_DIRECTORY);
+        this.maxSize = maxSize;
+    }
+
+    // Copies the cached content of the blob generation to the destination through the buffer, reporting it to the
+    // progress as it is written. Returns false without touching the destination if the generation is not cached. The
+    // hit is only counted once the caller verified the content with recordHit.
+    boolean fetch(BlobId blobId, long generation, long size, Path destination, ByteBuffer buffer,
+                  TransferProgress progress) throws IOException {
+        final Path entry = entryPath(blobId, generation);
+        try (FileChannel source = FileChannel.open(entry, StandardOpenOption.READ)) {
+            if (source.size() != size) {
+                LOGGER.warn("Ignoring cached {} of unexpected size {}, expected {}", blobId.getName(), source.size(), size);
+                this.misses.incrementAndGet();
+                return false;
+            }
+            try (FileChannel target = FileChannel.open(destination, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ChannelTransfers.copy(source, target, buffer, progress);
+            }
+        } catch (NoSuchFileException e) {
+            this.misses.incrementAndGet();
+            return false;
+        } catch (IOException e) {
+            // The caller downloads the blob instead
+            this.misses.incrementAndGet();
+            throw e;
+        }
+        // The modification time orders entries for eviction
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            LOGGER.debug("Failed to touch cached {}", entry, e);
+        }
+        return true;
+    }
+
+    void recordHit() {
+        this.hits.incrementAndGet();
+    }
+
+    // Adds a downloaded blob generation to the cache and evicts entries beyond the size limit
+    void store(BlobId blobId, long generation, Path downloaded) throws IOException {
+        final Path entry = entryPath(blobId, generation);
+        Files.createDirectories(entry.getParent());
+        final Path temporary = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(downloaded, temporary, StandardCopyOption.REPLACE_EXISTING);
+            final long size = Files.size(temporary);
+            withLock(() -> {
+                final long known = readTotal();
+                final long replaced = sizeOf(entry);
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                long total = known >= 0 ? known + size - replaced : size();
+                if (total > this.maxSize) {
+                    total = evict();
+                }
+                writeTotal(total);
+            });
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Drops an entry whose content turned out to be corrupted, the lookup that fetched it counts as a miss
+    void remove(BlobId blobId, long generation) throws IOException {
+        this.misses.incrementAndGet();
+        final Path entry = entryPath(blobId, generation);
+        withLock(() -> {
+            final long size = sizeOf(entry);
+            Files.deleteIfExists(entry);
+            final long known = readTotal();
+            if (known >= 0) {
+                writeTotal(Math.max(0, known - size));
+            }
+        });
+    }
+
+    long hits() {
+        return this.hits.get();
+    }
+
+    long misses() {
+        return this.misses.get();
+    }
+
+    long size() throws IOException {
+        return listEntries().stream().mapToLong(Entry::getSize).sum();
+    }
+
+    // Returns the size of the entries left, which other processes may have changed since the total was last written
+    private long evict() throws IOException {
+        final List<Entry> cached = listEntries();
+        long total = cached.stream().mapToLong(Entry::getSize).sum();
+        if (total <= this.maxSize) {
+            return total;
+        }
+        cached.sort(Comparator.comparingLong(Entry::getLastUsed));
+        for (Entry entry : cached) {
+            if (total <= this.maxSize) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry.getPath());
+                total -= entry.getSize();
+            } catch (IOException e) {
+                // Possibly still open by a reader on a platform that does not allow deleting open files
+                LOGGER.debug("Failed to evict {}", entry.getPath(), e);
+            }
+        }
+        return total;
+    }
+
+    // Returns -1 if the total is unknown, as in a cache written by an older version or a write that was cut short
+    private long readTotal() throws IOException {
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(this.root.resolve(SIZE_FILE)),
+                    StandardCharsets.US_ASCII).trim());
+        } catch (NoSuchFileException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void writeTotal(long total) throws IOException {
+        Files.write(this.root.resolve(SIZE_FILE), Long.toString(total).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static long sizeOf(Path entry) throws IOException {
+        try {
+            return Files.size(entry);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    private List<Entry> listEntries() throws IOException {
+        if (!Files.isDirectory(this.entries)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.walk(this.entries)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(p -> !p.getFileName().toString().endsWith(".tmp"))
+                    .map(p -> {
+                        try {
+                            return new Entry(p, Files.size(p), Files.getLastModifiedTime(p).toMillis());
+                        } catch (NoSuchFileException e) {
+                            return null;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .filter(e -> e != null)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void withLock(LockedAction action) throws IOException {
+        synchronized (PROCESS_LOCKS.computeIfAbsent(this.root, r -> new Object())) {
+            try (FileChannel lockChannel = FileChannel.open(this.root.resolve(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                final FileLock lock = lockChannel.lock();
+                try {
+                    action.run();
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    private Path entryPath(BlobId blobId, long generation) {
+        final String key = Hashing.sha256()
+                .hashString(blobId.getBucket() + "/" + blobId.getName() + "#" + generation, StandardCharsets.UTF_8)
+                .toString();
+        // Spread the entries over sub directories to keep directories small
+        return this.entries.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private interface LockedAction {
+        void run() throws IOException;
+    }
+
+    private static final class Entry {
+
+        private final Path path;
+        private final long size;
+        private final long lastUsed;
+
+        private Entry(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+
+        private Path getPath() {
+            return this.path;
+        }
+
+        private long getSize() {
+            return this.size;
+        }
+
+        private long getLastUsed() {
+            return this.lastUsed;
+        }
+    }
+}
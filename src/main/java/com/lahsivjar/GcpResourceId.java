@@ -1,19 +1,19 @@
 package com.lahsivjar;
 
-final class GcpResourceId {
+public final class GcpResourceId {
     private final String projectId;
     private final String bucket;
 
-    GcpResourceId(String projectId, String bucket) {
+    public GcpResourceId(String projectId, String bucket) {
         this.projectId = projectId;
         this.bucket = bucket;
     }
 
-    String getProjectId() {
+    public String getProjectId() {
         return this.projectId;
     }
 
-    String getBucket() {
+    public String getBucket() {
         return this.bucket;
     }
 }
@@ -4,28 +4,68 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import org.apache.maven.wagon.repository.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.Iterator;
 import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Stream;
 
 public final class GcpResourceIdManager {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(GcpResourceIdManager.class);
+
     private static final GcpResourceIdManager INSTANCE = new GcpResourceIdManager();
     private final ImmutableList<GcpResourceIdProvider> projectIdProviders;
+    // Resolved ids by repository url, a build only ever uses a handful of repositories
+    private final ConcurrentMap<String, GcpResourceId> resolved = new ConcurrentHashMap<>();
 
     private GcpResourceIdManager() {
-        // Order in the list defines priority
-        projectIdProviders = ImmutableList.of(
-                new HashSeparatedGcpResourceIdProvider(),
-                new EnvVariableBasedGcpResourceIdProvider()
-        );
+        // Order in the list defines priority, providers registered through ServiceLoader come after the explicit
+        // project#bucket notation and before the environment fallback which matches every repository
+        projectIdProviders = ImmutableList.<GcpResourceIdProvider>builder()
+                .add(new HashSeparatedGcpResourceIdProvider())
+                .addAll(loadProviders())
+                .add(new EnvVariableBasedGcpResourceIdProvider())
+                .build();
     }
 
     public static GcpResourceIdManager getInstance() {
         return INSTANCE;
     }
 
+    // Wagons reconnect for every module of a build, so every repository url is only resolved once. The environment
+    // of the process cannot change, providers depending on anything else can have the ids resolved again through
+    // invalidate.
     public GcpResourceId get(Repository repository) throws NoProjectIdFoundException, NoBucketFoundException {
+        final String url = repository.getUrl();
+        if (url == null) {
+            return resolve(repository);
+        }
+        final GcpResourceId cached = this.resolved.get(url);
+        if (cached != null) {
+            return cached;
+        }
+        final GcpResourceId gcpResourceId = resolve(repository);
+        this.resolved.putIfAbsent(url, gcpResourceId);
+        return gcpResourceId;
+    }
+
+    public void invalidate(Repository repository) {
+        if (repository.getUrl() != null) {
+            this.resolved.remove(repository.getUrl());
+        }
+    }
+
+    public void invalidateAll() {
+        this.resolved.clear();
+    }
+
+    private GcpResourceId resolve(Repository repository) throws NoProjectIdFoundException, NoBucketFoundException {
         final GcpResourceId gcpResourceId =  getProviders().stream()
                 .map(m -> m.get(repository))
                 .filter(Optional::isPresent)
@@ -44,4 +84,31 @@ public final class GcpResourceIdManager {
         return this.projectIdProviders;
     }
 
+    // A provider that fails to load is left out rather than failing every connect
+    private static ImmutableList<GcpResourceIdProvider> loadProviders() {
+        final ImmutableList.Builder<GcpResourceIdProvider> providers = ImmutableList.builder();
+        final Iterator<GcpResourceIdProvider> iterator = ServiceLoader.load(GcpResourceIdProvider.class,
+                GcpResourceIdManager.class.getClassLoader()).iterator();
+        while (hasNext(iterator)) {
+            try {
+                final GcpResourceIdProvider provider = iterator.next();
+                LOGGER.debug("Registered GCP resource id provider {}", provider.getClass().getName());
+                providers.add(provider);
+            } catch (ServiceConfigurationError e) {
+                LOGGER.warn("Failed to load a GCP resource id provider", e);
+            }
+        }
+        return providers.build();
+    }
+
+    // Unreadable provider configuration ends the lookup
+    private static boolean hasNext(Iterator<GcpResourceIdProvider> iterator) {
+        try {
+            return iterator.hasNext();
+        } catch (ServiceConfigurationError e) {
+            LOGGER.warn("Failed to look up GCP resource id providers", e);
+            return false;
+        }
+    }
+
 }
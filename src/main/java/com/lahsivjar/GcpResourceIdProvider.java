@@ -4,6 +4,7 @@ import org.apache.maven.wagon.repository.Repository;
 
 import java.util.Optional;
 
-interface GcpResourceIdProvider {
+// Custom providers are registered through META-INF/services/com.lahsivjar.GcpResourceIdProvider
+public interface GcpResourceIdProvider {
     Optional<GcpResourceId> get(Repository repository);
 }
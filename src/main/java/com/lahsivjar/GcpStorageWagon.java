@@ -1,18 +1,18 @@
 package com.lahsivjar;
 
-import com.google.api.client.http.apache.ApacheHttpTransport;
 import com.google.api.gax.paging.Page;
 import com.google.cloud.ReadChannel;
-import com.google.cloud.TransportOptions;
 import com.google.cloud.WriteChannel;
-import com.google.cloud.http.HttpTransportOptions;
 import com.google.cloud.storage.*;
 import com.google.common.annotations.VisibleForTesting;
-import org.apache.http.client.HttpClient;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.maven.wagon.*;
 import org.apache.maven.wagon.authentication.AuthenticationException;
 import org.apache.maven.wagon.authorization.AuthorizationException;
 import org.apache.maven.wagon.events.TransferEvent;
+import org.apache.maven.wagon.proxy.ProxyInfo;
+import org.apache.maven.wagon.proxy.ProxyInfoProvider;
+import org.apache.maven.wagon.proxy.ProxyUtils;
 import org.apache.maven.wagon.repository.Repository;
 import org.apache.maven.wagon.resource.Resource;
 import org.slf4j.Logger;
@@ -21,20 +21,146 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.URLConnection;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.WritableByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.CRC32C;
 
 public class GcpStorageWagon extends AbstractWagon {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GcpStorageWagon.class);
 
+    static final int DEFAULT_MAX_PARALLEL_UPLOADS = 4;
+    static final int DEFAULT_COMPOSITE_UPLOAD_PARTS = 8;
+    static final int DEFAULT_SLICED_DOWNLOAD_PARTS = 4;
+    // Matches the resumable upload chunk size of the GCS client
+    static final int DEFAULT_TRANSFER_BUFFER_SIZE = 2 * 1024 * 1024;
+    static final int DEFAULT_SINGLE_SHOT_UPLOAD_THRESHOLD = 1024 * 1024;
+    static final String DEFAULT_COMPRESS_EXTENSIONS = "pom,xml,html,htm,css,js,json,txt,svg";
+    static final long DEFAULT_COMPRESS_MIN_SIZE = 512;
+    static final int MAX_POOLED_BUFFERS = 16;
+    static final int DEFAULT_MAX_CONNECTIONS = 64;
+    static final long DEFAULT_CONNECTION_KEEP_ALIVE = 30_000;
+    static final int DEFAULT_METADATA_CACHE_SIZE = 1000;
+    static final String GENERATIONS_FILE = "generations.properties";
+    static final String CHECKSUMS_FILE = "checksums.properties";
+    static final int DEFAULT_DOWNLOAD_RESUME_ATTEMPTS = 3;
+    static final String UPLOADS_DIRECTORY = "uploads";
+    static final int DEFAULT_RETRY_ATTEMPTS = 3;
+    static final long DEFAULT_RETRY_INITIAL_BACKOFF = 100;
+    static final long DEFAULT_RETRY_MAX_BACKOFF = 5_000;
+    static final long DEFAULT_RETRY_DEADLINE = 60_000;
+    static final long DEFAULT_CIRCUIT_BREAKER_OPEN_TIME = 30_000;
+    static final long DEFAULT_HEDGED_READ_MIN_DELAY = 50;
+    static final long DEFAULT_PROGRESS_INTERVAL = 100;
+    static final int DEFAULT_MAX_IN_FLIGHT_TRANSFERS = 16;
+    static final long DEFAULT_DOWNLOAD_CACHE_SIZE = 10L * 1024 * 1024 * 1024;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final String GZIP_ENCODING = "gzip";
+    private static final String PART_SUFFIX = ".part";
+    private static final String STORAGE_HOST = "storage.googleapis.com";
+
     private GcpResourceIdManager resourceIdManager = GcpResourceIdManager.getInstance();
-    private Storage storage;
+    // Created on first use unless passed in, connecting alone does not load credentials
+    private volatile Storage storage;
+    // Only set while the storage client is leased from the shared cache
+    private StorageClientSettings storageClientSettings;
+    private Future<?> warmUp;
     private String baseDir;
     private GcpResourceId gcpResourceId;
+    private BlobMetadataCache metadataCache;
+    private BlobMetadataBatcher metadataBatcher;
+    private GenerationStore generationStore;
+    private DownloadCache downloadCache;
+    private ChecksumCache checksumCache;
+    private UploadJournal uploadJournal;
+    private RetryPolicy retryPolicy;
+    private CircuitBreaker circuitBreaker;
+    private HedgedReads hedgedReader;
+    private TransferMetrics metrics;
+    private ExecutorService transferExecutor;
+    private AsyncTransfers asyncTransfers;
+    // Only set while async transfers run on virtual threads created by the wagon
+    private ExecutorService virtualThreadExecutor;
+
+    private int maxParallelUploads = DEFAULT_MAX_PARALLEL_UPLOADS;
+    // Parallel composite uploads are disabled unless a positive threshold is configured
+    private long compositeUploadThreshold = 0;
+    private int compositeUploadParts = DEFAULT_COMPOSITE_UPLOAD_PARTS;
+    // Sliced downloads are disabled unless a positive threshold is configured
+    private long slicedDownloadThreshold = 0;
+    private int slicedDownloadParts = DEFAULT_SLICED_DOWNLOAD_PARTS;
+    private int bufferSize = DEFAULT_TRANSFER_BUFFER_SIZE;
+    private int singleShotUploadThreshold = DEFAULT_SINGLE_SHOT_UPLOAD_THRESHOLD;
+    private boolean memoryMappedUploads = false;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private long connectionKeepAlive = DEFAULT_CONNECTION_KEEP_ALIVE;
+    private int metadataCacheSize = DEFAULT_METADATA_CACHE_SIZE;
+    // Cached metadata lives for the whole session unless a positive ttl is configured
+    private long metadataCacheTtl = 0;
+    // Concurrent metadata lookups are only collected into batches when a positive window is configured
+    private long metadataBatchWindow = 0;
+    private int metadataBatchSize = BlobMetadataBatcher.MAX_BATCH_SIZE;
+    private boolean conditionalGets = false;
+    // Holds state shared by builds on this machine
+    private File stateDirectory = new File(System.getProperty("user.home"), ".m2/gcp-storage-wagon");
+    // Downloads are only cached locally when a directory is configured
+    private File downloadCacheDirectory;
+    private long downloadCacheSize = DEFAULT_DOWNLOAD_CACHE_SIZE;
+    private boolean skipUnchangedUploads = false;
+    private boolean verifyChecksums = true;
+    private boolean stagedUploads = false;
+    private int downloadResumeAttempts = DEFAULT_DOWNLOAD_RESUME_ATTEMPTS;
+    private boolean resumableUploads = false;
+    private int retryAttempts = DEFAULT_RETRY_ATTEMPTS;
+    private long retryInitialBackoff = DEFAULT_RETRY_INITIAL_BACKOFF;
+    private long retryMaxBackoff = DEFAULT_RETRY_MAX_BACKOFF;
+    private long retryDeadline = DEFAULT_RETRY_DEADLINE;
+    // The circuit breaker is disabled unless a positive threshold is configured
+    private int circuitBreakerThreshold = 0;
+    private long circuitBreakerOpenTime = DEFAULT_CIRCUIT_BREAKER_OPEN_TIME;
+    private boolean hedgedReads = false;
+    private long hedgedReadMinDelay = DEFAULT_HEDGED_READ_MIN_DELAY;
+    private long progressInterval = DEFAULT_PROGRESS_INTERVAL;
+    private boolean warmUpConnection = false;
+    private boolean checksumMetadata = false;
+    private boolean compressUploads = false;
+    private String compressExtensions = DEFAULT_COMPRESS_EXTENSIONS;
+    private Set<String> compressedExtensions = parseExtensions(DEFAULT_COMPRESS_EXTENSIONS);
+    private long compressMinSize = DEFAULT_COMPRESS_MIN_SIZE;
+    // Async transfers run on virtual threads where available unless an executor is configured
+    private Executor asyncExecutor;
+    private int maxInFlightTransfers = DEFAULT_MAX_IN_FLIGHT_TRANSFERS;
 
     public GcpStorageWagon() {
 
@@ -45,55 +171,548 @@ public class GcpStorageWagon extends AbstractWagon {
         this.storage = storage;
     }
 
+    public int getMaxParallelUploads() {
+        return this.maxParallelUploads;
+    }
+
+    public void setMaxParallelUploads(int maxParallelUploads) {
+        this.maxParallelUploads = maxParallelUploads;
+    }
+
+    public long getCompositeUploadThreshold() {
+        return this.compositeUploadThreshold;
+    }
+
+    public void setCompositeUploadThreshold(long compositeUploadThreshold) {
+        this.compositeUploadThreshold = compositeUploadThreshold;
+    }
+
+    public int getCompositeUploadParts() {
+        return this.compositeUploadParts;
+    }
+
+    public void setCompositeUploadParts(int compositeUploadParts) {
+        this.compositeUploadParts = compositeUploadParts;
+    }
+
+    public long getSlicedDownloadThreshold() {
+        return this.slicedDownloadThreshold;
+    }
+
+    public void setSlicedDownloadThreshold(long slicedDownloadThreshold) {
+        this.slicedDownloadThreshold = slicedDownloadThreshold;
+    }
+
+    public int getSlicedDownloadParts() {
+        return this.slicedDownloadParts;
+    }
+
+    public void setSlicedDownloadParts(int slicedDownloadParts) {
+        this.slicedDownloadParts = slicedDownloadParts;
+    }
+
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getSingleShotUploadThreshold() {
+        return this.singleShotUploadThreshold;
+    }
+
+    public void setSingleShotUploadThreshold(int singleShotUploadThreshold) {
+        this.singleShotUploadThreshold = singleShotUploadThreshold;
+    }
+
+    public boolean isMemoryMappedUploads() {
+        return this.memoryMappedUploads;
+    }
+
+    public void setMemoryMappedUploads(boolean memoryMappedUploads) {
+        this.memoryMappedUploads = memoryMappedUploads;
+    }
+
+    public int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public long getConnectionKeepAlive() {
+        return this.connectionKeepAlive;
+    }
+
+    public void setConnectionKeepAlive(long connectionKeepAlive) {
+        this.connectionKeepAlive = connectionKeepAlive;
+    }
+
+    public int getMetadataCacheSize() {
+        return this.metadataCacheSize;
+    }
+
+    public void setMetadataCacheSize(int metadataCacheSize) {
+        this.metadataCacheSize = metadataCacheSize;
+    }
+
+    public long getMetadataCacheTtl() {
+        return this.metadataCacheTtl;
+    }
+
+    public void setMetadataCacheTtl(long metadataCacheTtl) {
+        this.metadataCacheTtl = metadataCacheTtl;
+    }
+
+    public long getMetadataBatchWindow() {
+        return this.metadataBatchWindow;
+    }
+
+    public void setMetadataBatchWindow(long metadataBatchWindow) {
+        this.metadataBatchWindow = metadataBatchWindow;
+    }
+
+    public int getMetadataBatchSize() {
+        return this.metadataBatchSize;
+    }
+
+    public void setMetadataBatchSize(int metadataBatchSize) {
+        this.metadataBatchSize = metadataBatchSize;
+    }
+
+    public boolean isConditionalGets() {
+        return this.conditionalGets;
+    }
+
+    public void setConditionalGets(boolean conditionalGets) {
+        this.conditionalGets = conditionalGets;
+    }
+
+    public File getStateDirectory() {
+        return this.stateDirectory;
+    }
+
+    public void setStateDirectory(File stateDirectory) {
+        this.stateDirectory = stateDirectory;
+    }
+
+    public File getDownloadCacheDirectory() {
+        return this.downloadCacheDirectory;
+    }
+
+    public void setDownloadCacheDirectory(File downloadCacheDirectory) {
+        this.downloadCacheDirectory = downloadCacheDirectory;
+    }
+
+    public long getDownloadCacheSize() {
+        return this.downloadCacheSize;
+    }
+
+    public void setDownloadCacheSize(long downloadCacheSize) {
+        this.downloadCacheSize = downloadCacheSize;
+    }
+
+    public boolean isSkipUnchangedUploads() {
+        return this.skipUnchangedUploads;
+    }
+
+    public void setSkipUnchangedUploads(boolean skipUnchangedUploads) {
+        this.skipUnchangedUploads = skipUnchangedUploads;
+    }
+
+    public boolean isVerifyChecksums() {
+        return this.verifyChecksums;
+    }
+
+    public void setVerifyChecksums(boolean verifyChecksums) {
+        this.verifyChecksums = verifyChecksums;
+    }
+
+    public boolean isStagedUploads() {
+        return this.stagedUploads;
+    }
+
+    public void setStagedUploads(boolean stagedUploads) {
+        this.stagedUploads = stagedUploads;
+    }
+
+    public int getDownloadResumeAttempts() {
+        return this.downloadResumeAttempts;
+    }
+
+    public void setDownloadResumeAttempts(int downloadResumeAttempts) {
+        this.downloadResumeAttempts = downloadResumeAttempts;
+    }
+
+    public boolean isResumableUploads() {
+        return this.resumableUploads;
+    }
+
+    public void setResumableUploads(boolean resumableUploads) {
+        this.resumableUploads = resumableUploads;
+    }
+
+    public int getRetryAttempts() {
+        return this.retryAttempts;
+    }
+
+    public void setRetryAttempts(int retryAttempts) {
+        this.retryAttempts = retryAttempts;
+    }
+
+    public long getRetryInitialBackoff() {
+        return this.retryInitialBackoff;
+    }
+
+    public void setRetryInitialBackoff(long retryInitialBackoff) {
+        this.retryInitialBackoff = retryInitialBackoff;
+    }
+
+    public long getRetryMaxBackoff() {
+        return this.retryMaxBackoff;
+    }
+
+    public void setRetryMaxBackoff(long retryMaxBackoff) {
+        this.retryMaxBackoff = retryMaxBackoff;
+    }
+
+    public long getRetryDeadline() {
+        return this.retryDeadline;
+    }
+
+    public void setRetryDeadline(long retryDeadline) {
+        this.retryDeadline = retryDeadline;
+    }
+
+    public int getCircuitBreakerThreshold() {
+        return this.circuitBreakerThreshold;
+    }
+
+    public void setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+    }
+
+    public long getCircuitBreakerOpenTime() {
+        return this.circuitBreakerOpenTime;
+    }
+
+    public void setCircuitBreakerOpenTime(long circuitBreakerOpenTime) {
+        this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+    }
+
+    public boolean isHedgedReads() {
+        return this.hedgedReads;
+    }
+
+    public void setHedgedReads(boolean hedgedReads) {
+        this.hedgedReads = hedgedReads;
+    }
+
+    public long getHedgedReadMinDelay() {
+        return this.hedgedReadMinDelay;
+    }
+
+    public void setHedgedReadMinDelay(long hedgedReadMinDelay) {
+        this.hedgedReadMinDelay = hedgedReadMinDelay;
+    }
+
+    public long getProgressInterval() {
+        return this.progressInterval;
+    }
+
+    public void setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    public boolean isWarmUpConnection() {
+        return this.warmUpConnection;
+    }
+
+    public void setWarmUpConnection(boolean warmUpConnection) {
+        this.warmUpConnection = warmUpConnection;
+    }
+
+    public boolean isChecksumMetadata() {
+        return this.checksumMetadata;
+    }
+
+    public void setChecksumMetadata(boolean checksumMetadata) {
+        this.checksumMetadata = checksumMetadata;
+    }
+
+    public boolean isCompressUploads() {
+        return this.compressUploads;
+    }
+
+    public void setCompressUploads(boolean compressUploads) {
+        this.compressUploads = compressUploads;
+    }
+
+    public String getCompressExtensions() {
+        return this.compressExtensions;
+    }
+
+    public void setCompressExtensions(String compressExtensions) {
+        this.compressExtensions = compressExtensions;
+        this.compressedExtensions = parseExtensions(compressExtensions);
+    }
+
+    public long getCompressMinSize() {
+        return this.compressMinSize;
+    }
+
+    public void setCompressMinSize(long compressMinSize) {
+        this.compressMinSize = compressMinSize;
+    }
+
+    public Executor getAsyncExecutor() {
+        return this.asyncExecutor;
+    }
+
+    public synchronized void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        shutdownAsyncTransfers();
+    }
+
+    public int getMaxInFlightTransfers() {
+        return this.maxInFlightTransfers;
+    }
+
+    public synchronized void setMaxInFlightTransfers(int maxInFlightTransfers) {
+        this.maxInFlightTransfers = maxInFlightTransfers;
+        shutdownAsyncTransfers();
+    }
+
     @Override
     void connectInternal() throws ConnectionException, AuthenticationException {
+        final long start = System.nanoTime();
         final Repository repository = getRepository();
 
         this.gcpResourceId = resourceIdManager.get(repository);
+        this.metrics = TransferMetrics.forBucket(this.gcpResourceId.getBucket());
+        try {
+            openSession(repository);
+        } catch (RuntimeException e) {
+            this.metrics.record(TransferMetrics.Operation.CONNECT, TransferMetrics.Outcome.FAILURE, start, 0);
+            throw e;
+        }
+        this.metrics.record(TransferMetrics.Operation.CONNECT, TransferMetrics.Outcome.SUCCESS, start, 0);
+    }
+
+    private void openSession(Repository repository) {
         this.baseDir = parseBaseDir(repository);
+        this.metadataCache = new BlobMetadataCache(this.metadataCacheSize, this.metadataCacheTtl);
 
         LOGGER.debug("Initiating connection to GCP storage using project id {} and to bucket {} with base directory {}",
                 this.gcpResourceId.getProjectId(), this.gcpResourceId.getBucket(), this.baseDir);
 
-        if (this.storage == null) {
-            final StorageOptions storageOptions = buildStorageOptions();
-            this.storage = storageOptions.getService();
+        this.metadataBatcher = new BlobMetadataBatcher(this::storage, this.metadataBatchSize, this.metadataBatchWindow);
+        this.retryPolicy = new RetryPolicy(this.retryAttempts, this.retryInitialBackoff, this.retryMaxBackoff,
+                this.retryDeadline, this.metrics::onRetry);
+        if (this.circuitBreakerThreshold > 0) {
+            this.circuitBreaker = CircuitBreaker.forBucket(this.gcpResourceId.getBucket(), this.circuitBreakerThreshold,
+                    this.circuitBreakerOpenTime);
+        }
+        if (this.hedgedReads) {
+            this.hedgedReader = HedgedReads.forBucket(this.gcpResourceId.getBucket(), getTransferExecutor(),
+                    this.hedgedReadMinDelay);
+        }
+
+        if (this.conditionalGets) {
+            final Path generationsFile = this.stateDirectory.toPath().resolve(GENERATIONS_FILE);
+            try {
+                this.generationStore = GenerationStore.shared(generationsFile);
+            } catch (IOException | IllegalArgumentException e) {
+                // Without the records every getIfNewer simply falls back to comparing timestamps
+                LOGGER.warn("Failed to load {}, conditional gets start from scratch", generationsFile, e);
+                this.generationStore = new GenerationStore(generationsFile);
+            }
+        }
+        if (this.downloadCacheDirectory != null) {
+            this.downloadCache = new DownloadCache(this.downloadCacheDirectory.toPath(), this.downloadCacheSize);
+        }
+        if (this.resumableUploads) {
+            this.uploadJournal = new UploadJournal(this.stateDirectory.toPath().resolve(UPLOADS_DIRECTORY),
+                    () -> storage().getOptions());
+        }
+        if (this.skipUnchangedUploads) {
+            final Path checksumsFile = this.stateDirectory.toPath().resolve(CHECKSUMS_FILE);
+            try {
+                this.checksumCache = ChecksumCache.shared(checksumsFile);
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.warn("Failed to load {}, source files are hashed again", checksumsFile, e);
+                this.checksumCache = new ChecksumCache(checksumsFile);
+            }
+        }
+        if (this.warmUpConnection) {
+            warmUp();
         }
     }
 
     @Override
     void disconnectInternal() throws ConnectionException {
+        if (this.warmUp != null) {
+            this.warmUp.cancel(true);
+            this.warmUp = null;
+        }
         this.baseDir = null;
-        this.storage = null;
-        this.gcpResourceId = null;
+        this.metadataCache = null;
+        this.metadataBatcher = null;
+        if (this.generationStore != null) {
+            try {
+                this.generationStore.save();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to save the generations of downloaded resources", e);
+            }
+            this.generationStore = null;
+        }
+        if (this.downloadCache != null) {
+            LOGGER.debug("Download cache served {} hits and {} misses", this.downloadCache.hits(), this.downloadCache.misses());
+            this.downloadCache = null;
+        }
+        this.uploadJournal = null;
+        this.retryPolicy = null;
+        this.circuitBreaker = null;
+        if (this.hedgedReader != null) {
+            LOGGER.debug("Hedged {} metadata reads", this.hedgedReader.hedged());
+            this.hedgedReader = null;
+        }
+        if (this.checksumCache != null) {
+            try {
+                this.checksumCache.save();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to save the checksums of uploaded files", e);
+            }
+            this.checksumCache = null;
+        }
+        if (this.metrics != null) {
+            LOGGER.debug("Transfer metrics of {}:{}{}", this.gcpResourceId.getBucket(), System.lineSeparator(),
+                    this.metrics.getSummary());
+            this.metrics = null;
+        }
+        // Leases are only taken under the same lock while connected, so no lease outlives the connection
+        synchronized (this) {
+            this.storage = null;
+            this.gcpResourceId = null;
+            if (this.storageClientSettings != null) {
+                StorageClientCache.getInstance().release(this.storageClientSettings);
+                this.storageClientSettings = null;
+            }
+        }
+        shutdownAsyncTransfers();
+        shutdownTransferExecutor();
+    }
+
+    // The async variants run the blocking operations on the async executor. Submitting blocks while
+    // maxInFlightTransfers transfers are in flight, and cancelling a future interrupts its running transfer.
+    public CompletableFuture<Void> putAsync(File source, String destination) {
+        return getAsyncTransfers().submit(() -> {
+            put(source, destination);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> getAsync(String resourceName, File destination) {
+        return getAsyncTransfers().submit(() -> {
+            get(resourceName, destination);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> existsAsync(String resource) {
+        return getAsyncTransfers().submit(() -> resourceExists(resource));
     }
 
     @Override
     public void get(String resourceName, File destination)
             throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+        final long start = System.nanoTime();
+        TransferMetrics.Outcome outcome = TransferMetrics.Outcome.FAILURE;
+        try {
+            getInternal(resourceName, destination, null);
+            outcome = TransferMetrics.Outcome.SUCCESS;
+        } catch (ResourceDoesNotExistException e) {
+            outcome = TransferMetrics.Outcome.NOT_FOUND;
+            throw e;
+        } finally {
+            this.metrics.record(TransferMetrics.Operation.GET, outcome, start, destination.length());
+        }
+    }
+
+    // A blob already looked up by the caller is downloaded as is instead of fetching its metadata again
+    private void getInternal(String resourceName, File destination, Blob knownBlob)
+            throws TransferFailedException, ResourceDoesNotExistException {
         Resource resource = new Resource(resourceName);
 
         final String fullResourceName = getKey(resourceName);
         LOGGER.debug("Getting resource {} and putting to destination {}", fullResourceName, destination);
 
+        if (knownBlob == null) {
+            final Blob described = sidecarSource(fullResourceName);
+            if (described != null) {
+                getSidecar(resourceName, described, destination);
+                return;
+            }
+        }
+
         createParentDirectories(destination);
         fireGetInitiated(resource, destination);
 
-        final Blob blob = getBlob(fullResourceName);
+        final Blob blob = knownBlob != null ? knownBlob : getBlob(fullResourceName);
 
         if (blob == null) {
             throw new ResourceDoesNotExistException(String.format("%s does not exist", resourceName));
         }
 
         fireGetStarted(resource, destination);
-        downloadInternal(resource, blob, destination);
+        downloadCached(resource, blob, destination);
+        if (this.generationStore != null && blob.getGeneration() != null) {
+            this.generationStore.put(blob.getBlobId(), blob.getGeneration(), destination);
+        }
         fireGetCompleted(resource, destination);
     }
 
     @Override
     public boolean getIfNewer(String resourceName, File destination, long timestamp)
             throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+        final long start = System.nanoTime();
+        TransferMetrics.Outcome outcome = TransferMetrics.Outcome.FAILURE;
+        boolean downloaded = false;
+        try {
+            downloaded = getIfNewerInternal(resourceName, destination, timestamp);
+            outcome = TransferMetrics.Outcome.SUCCESS;
+            return downloaded;
+        } catch (ResourceDoesNotExistException e) {
+            outcome = TransferMetrics.Outcome.NOT_FOUND;
+            throw e;
+        } finally {
+            this.metrics.record(TransferMetrics.Operation.GET_IF_NEWER, outcome, start,
+                    downloaded ? destination.length() : 0);
+        }
+    }
+
+    private boolean getIfNewerInternal(String resourceName, File destination, long timestamp)
+            throws TransferFailedException, ResourceDoesNotExistException {
         final String fullResourceName = getKey(resourceName);
+        final Blob described = sidecarSource(fullResourceName);
+        if (described != null) {
+            // Keeping the checksum in the metadata updated the blob, so its update time is the one of the sidecar
+            if (described.getUpdateTime() != null && described.getUpdateTime() <= timestamp) {
+                return false;
+            }
+            getSidecar(resourceName, described, destination);
+            return true;
+        }
+
+        final BlobId blobId = BlobId.of(this.gcpResourceId.getBucket(), fullResourceName);
+        final Long knownGeneration = this.generationStore != null ? this.generationStore.get(blobId, destination) : null;
+        if (knownGeneration != null) {
+            return getIfChanged(resourceName, blobId, knownGeneration, destination);
+        }
+
         final Blob blob = getBlob(fullResourceName);
 
         if (blob == null) {
@@ -112,15 +731,84 @@ public class GcpStorageWagon extends AbstractWagon {
         }
 
         if (isNewer) {
-            get(resourceName, destination);
+            getInternal(resourceName, destination, blob);
             return true;
         }
         return false;
     }
 
+    // The destination still holds the known generation, a single metadata request conditional on the generation
+    // having changed answers with 304 when it has not and otherwise returns the metadata to download right away
+    private boolean getIfChanged(String resourceName, BlobId blobId, long knownGeneration, File destination)
+            throws TransferFailedException, ResourceDoesNotExistException {
+        final Blob blob;
+        try {
+            blob = withRetries(() -> storage().get(blobId, Storage.BlobGetOption.generationNotMatch(knownGeneration)));
+        } catch (StorageException e) {
+            if (e.getCode() == HTTP_NOT_MODIFIED) {
+                LOGGER.debug("Resource {} is still at generation {}", blobId.getName(), knownGeneration);
+                return false;
+            }
+            throw new TransferFailedException(String.format("Failed to read %s", blobId.getName()), e);
+        }
+
+        if (blob == null) {
+            throw new ResourceDoesNotExistException(String.format("%s does not exist", blobId.getName()));
+        }
+        getInternal(resourceName, destination, blob);
+        return true;
+    }
+
+    // Writes the sidecar from the metadata of the blob it describes
+    private void getSidecar(String resourceName, Blob described, File destination) throws TransferFailedException {
+        final Resource resource = new Resource(resourceName);
+        final byte[] content = ChecksumSidecars.get(described, ChecksumSidecars.algorithm(resourceName))
+                .getBytes(StandardCharsets.US_ASCII);
+        resource.setContentLength(content.length);
+
+        createParentDirectories(destination);
+        fireGetInitiated(resource, destination);
+        fireGetStarted(resource, destination);
+        try (ProgressDispatcher progress = progressDispatcher(resource, TransferEvent.REQUEST_GET)) {
+            Files.write(destination.toPath(), content);
+            progress.update(ByteBuffer.wrap(content));
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Failed to write %s", destination), e);
+        }
+        fireGetCompleted(resource, destination);
+    }
+
+    // The blob keeping the content of the given sidecar resource in its metadata, or null if the resource is an
+    // object of its own
+    private Blob sidecarSource(String fullResourceName) throws TransferFailedException {
+        final String algorithm = this.checksumMetadata ? ChecksumSidecars.algorithm(fullResourceName) : null;
+        if (algorithm == null) {
+            return null;
+        }
+        final Blob described = getBlob(ChecksumSidecars.described(fullResourceName, algorithm));
+        return ChecksumSidecars.get(described, algorithm) != null ? described : null;
+    }
+
     @Override
     public void put(File source, String destination)
             throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+        final long start = System.nanoTime();
+        TransferMetrics.Outcome outcome = TransferMetrics.Outcome.FAILURE;
+        boolean uploaded = false;
+        try {
+            uploaded = putInternal(source, destination);
+            outcome = TransferMetrics.Outcome.SUCCESS;
+        } catch (ResourceDoesNotExistException e) {
+            outcome = TransferMetrics.Outcome.NOT_FOUND;
+            throw e;
+        } finally {
+            this.metrics.record(TransferMetrics.Operation.PUT, outcome, start, uploaded ? source.length() : 0);
+        }
+    }
+
+    // Returns whether the source was uploaded rather than skipped as unchanged
+    private boolean putInternal(File source, String destination)
+            throws TransferFailedException, ResourceDoesNotExistException {
         final Resource resource = new Resource(destination);
         resource.setContentLength(source.length());
 
@@ -135,7 +823,6 @@ public class GcpStorageWagon extends AbstractWagon {
                 .setContentType(contentType)
                 .build();
         firePutStarted(resource, source);
-        final TransferEvent transferProgressEvent = buildTransferProgressEvent(resource, TransferEvent.REQUEST_PUT);
 
         if (!source.exists()) {
             throw new ResourceDoesNotExistException(String.format("%s does not exist", source.getName()));
@@ -149,69 +836,349 @@ public class GcpStorageWagon extends AbstractWagon {
                     source.getName(), destination), e);
         }
 
-        if (fileSize > 1_000_000) {
-            try (final WriteChannel writer = this.storage.writer(blobInfo)) {
-                byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-                try (InputStream input = new FileInputStream(source)) {
-                    int limit;
-                    while ((limit = input.read(buffer)) >= 0) {
-                        writer.write(ByteBuffer.wrap(buffer, 0, limit));
-                        fireTransferProgress(transferProgressEvent, buffer, limit);
-                    }
-                }
-            } catch (IOException e) {
-                throw new TransferFailedException(String.format("Failed to transfer %s to %s",
-                        source.getName(), destination), e);
-            } catch (StorageException se) {
-                throw new TransferFailedException(String.format("Failed to transfer %s to %s",
-                        source.getName(), destination), se);
-            }
-        } else {
-            byte[] bytes;
-            try {
-                bytes = Files.readAllBytes(source.toPath());
-            } catch (IOException e) {
-                throw new TransferFailedException(String.format("Failed to transfer %s to %s",
-                        source.getName(), destination), e);
-            }
-            this.storage.create(blobInfo, bytes);
-            fireTransferProgress(transferProgressEvent, bytes, bytes.length);
+        if (this.checksumMetadata && putSidecar(source, blobId)) {
+            firePutCompleted(resource, source);
+            return false;
+        }
+
+        if (this.checksumCache != null && isUnchanged(source, blobId, fileSize)) {
+            LOGGER.debug("Skipping upload of {}, {} has the same content", source, fullResourceName);
+            firePutCompleted(resource, source);
+            return false;
+        }
+
+        // Drop any metadata of the previous version, including a cached miss
+        this.metadataCache.invalidate(blobId);
+        try (ProgressDispatcher progress = progressDispatcher(resource, TransferEvent.REQUEST_PUT)) {
+            upload(source, destination, blobInfo, fileSize, progress);
+        } finally {
+            this.metadataCache.invalidate(blobId);
         }
         firePutCompleted(resource, source);
+        return true;
+    }
+
+    // Keeps the content of a sidecar in the metadata of the blob it describes. Returns false if the source has to be
+    // uploaded as an object of its own, because it is no sidecar, is too large or the blob does not exist (yet).
+    private boolean putSidecar(File source, BlobId blobId) throws TransferFailedException {
+        final String algorithm = ChecksumSidecars.algorithm(blobId.getName());
+        if (algorithm == null) {
+            return false;
+        }
+        final String content;
+        try {
+            content = ChecksumSidecars.read(source);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Failed to read %s", source), e);
+        }
+        if (content == null) {
+            return false;
+        }
+        final Blob described = getBlob(ChecksumSidecars.described(blobId.getName(), algorithm));
+        if (described == null) {
+            return false;
+        }
+        if (content.equals(ChecksumSidecars.get(described, algorithm))) {
+            LOGGER.debug("Skipping upload of {}, {} already keeps the same checksum", source, described.getName());
+            return true;
+        }
+
+        // Patching only adds the key, and the generation condition keeps the checksum from being attached to content
+        // that replaced the blob in the meantime
+        final BlobInfo update = BlobInfo.newBuilder(described.getBlobId())
+                .setMetadata(Collections.singletonMap(ChecksumSidecars.metadataKey(algorithm), content))
+                .build();
+        final Storage.BlobTargetOption[] options = described.getGeneration() != null
+                ? new Storage.BlobTargetOption[]{Storage.BlobTargetOption.generationMatch()}
+                : new Storage.BlobTargetOption[0];
+        try {
+            withRetries(() -> storage().update(update, options));
+        } catch (StorageException e) {
+            throw new TransferFailedException(String.format("Failed to transfer %s to %s",
+                    source.getName(), described.getName()), e);
+        } finally {
+            this.metadataCache.invalidate(BlobId.of(described.getBucket(), described.getName()));
+        }
+        return true;
+    }
+
+    // Compares the CRC32C of the source with the one of the existing blob
+    private boolean isUnchanged(File source, BlobId blobId, long fileSize) throws TransferFailedException {
+        final Blob blob = getBlob(blobId.getName());
+        if (blob == null || blob.getCrc32c() == null || blob.getSize() == null || blob.getSize() != fileSize) {
+            return false;
+        }
+        return blob.getCrc32c().equals(crc32c(source));
+    }
+
+    private String crc32c(File source) throws TransferFailedException {
+        final BufferPool buffers = getDirectBuffers();
+        final ByteBuffer buffer = buffers.acquire();
+        try {
+            if (this.checksumCache != null) {
+                return this.checksumCache.crc32c(source, buffer);
+            }
+            try (FileChannel input = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+                return Checksums.crc32c(input, buffer);
+            }
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Failed to read %s", source), e);
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    private void upload(File source, String destination, BlobInfo blobInfo, long fileSize,
+                        TransferProgress progress) throws TransferFailedException {
+        if (isCompressedUpload(destination, fileSize)) {
+            compressedUpload(source, destination, blobInfo, fileSize, progress);
+        } else if (isCompositeUpload(fileSize)) {
+            final AtomicLong reported = new AtomicLong();
+            try {
+                compositeUpload(source, blobInfo, counting(reported, progress));
+            } catch (IOException | StorageException e) {
+                LOGGER.warn("Parallel composite upload of {} failed, falling back to a single stream upload",
+                        blobInfo.getName(), e);
+                // Listeners already saw the bytes of the parts, only what goes beyond them is reported again
+                streamUpload(source, destination, blobInfo, skipping(reported.get(), progress));
+            }
+        } else if (fileSize > this.singleShotUploadThreshold) {
+            streamUpload(source, destination, blobInfo, progress);
+        } else {
+            singleShotUpload(source, destination, blobInfo, (int) fileSize, progress);
+        }
+    }
+
+    // Sends the file with its metadata in one multipart request. The CRC32C is computed over the pooled copy rather than
+    // by the client, whose create from an array hashes the content with MD5 and a table based CRC32C on every upload.
+    private void singleShotUpload(File source, String destination, BlobInfo blobInfo, int fileSize,
+                                  TransferProgress progress) throws TransferFailedException {
+        final BufferPool buffers = getSingleShotBuffers();
+        final ByteBuffer buffer = buffers.acquire();
+        try {
+            buffer.limit(fileSize);
+            try (FileChannel input = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+                while (buffer.hasRemaining()) {
+                    if (input.read(buffer) < 0) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new TransferFailedException(String.format("Failed to transfer %s to %s",
+                        source.getName(), destination), e);
+            }
+            buffer.flip();
+            create(blobInfo, buffer);
+            progress.update(buffer);
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    // Creates the blob from the remaining content of the heap buffer, straight from its array. The client sends the
+    // CRC32C and MD5 of the content along, so GCS rejects content corrupted on the way.
+    private void create(BlobInfo blobInfo, ByteBuffer content) {
+        withRetries(() -> storage().create(blobInfo, content.array(), content.arrayOffset() + content.position(),
+                content.remaining()));
+    }
+
+    private boolean isCompressedUpload(String destination, long fileSize) {
+        if (!this.compressUploads || fileSize < this.compressMinSize) {
+            return false;
+        }
+        final int dot = destination.lastIndexOf('.');
+        return dot >= 0 && this.compressedExtensions.contains(destination.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    // Uploads the file gzip encoded. Files whose compressed content is sure to fit a single shot buffer are compressed
+    // into it and sent in one request, larger ones are compressed on their way into a resumable upload.
+    private void compressedUpload(File source, String destination, BlobInfo blobInfo, long fileSize,
+                                  TransferProgress progress) throws TransferFailedException {
+        final BlobInfo encodedInfo = blobInfo.toBuilder().setContentEncoding(GZIP_ENCODING).build();
+        final BufferPool buffers = getHeapBuffers();
+        final ByteBuffer buffer = buffers.acquire();
+        final CRC32C crc32c = new CRC32C();
+        // The CRC32C of the compressed content is only known at the end, so it is compared with the one of the written
+        // object, a staged temporary one or the target itself
+        final boolean staged = this.verifyChecksums && this.stagedUploads;
+        final BlobInfo writtenInfo = staged ? BlobInfo.newBuilder(temporaryId(encodedInfo)).build() : encodedInfo;
+        try (FileChannel input = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            if (GzipCompression.maxCompressedSize(fileSize) <= this.singleShotUploadThreshold) {
+                final BufferPool targets = getSingleShotBuffers();
+                final ByteBuffer target = targets.acquire();
+                try {
+                    GzipCompression.compress(input, target, buffer, progress);
+                    create(encodedInfo, target);
+                } finally {
+                    targets.release(target);
+                }
+                return;
+            }
+            // Closing the writer commits the upload, so it is only closed once all of the content is compressed
+            final WriteChannel writer = retrying(withRetries(() -> storage().writer(writtenInfo)));
+            writer.setChunkSize(this.bufferSize);
+            GzipCompression.compress(input,
+                    new CheckedOutputStream(ChannelTransfers.unclosedOutputStream(writer), crc32c), buffer, progress);
+            writer.close();
+        } catch (IOException | StorageException e) {
+            throw new TransferFailedException(String.format("Failed to transfer %s to %s",
+                    source.getName(), destination), e);
+        } finally {
+            buffers.release(buffer);
+        }
+        if (staged) {
+            commitCopy(writtenInfo.getBlobId(), encodedInfo, Checksums.encode(crc32c.getValue()));
+        } else if (this.verifyChecksums) {
+            verifyUpload(encodedInfo.getBlobId(), Checksums.encode(crc32c.getValue()));
+        }
+    }
+
+    private static Set<String> parseExtensions(String extensions) {
+        final Set<String> parsed = new HashSet<>();
+        if (extensions != null) {
+            for (String extension : extensions.split(",")) {
+                final String trimmed = extension.trim().toLowerCase(Locale.ROOT);
+                if (!trimmed.isEmpty()) {
+                    parsed.add(trimmed.startsWith(".") ? trimmed.substring(1) : trimmed);
+                }
+            }
+        }
+        return parsed;
     }
 
     @Override
     public boolean resourceExists(String resource) throws TransferFailedException, AuthorizationException {
-        final Blob blob = getBlob(getKey(resource));
+        final long start = System.nanoTime();
+        TransferMetrics.Outcome outcome = TransferMetrics.Outcome.FAILURE;
+        try {
+            final String key = getKey(resource);
+            if (sidecarSource(key) != null) {
+                outcome = TransferMetrics.Outcome.SUCCESS;
+                return true;
+            }
 
-        if (blob == null) {
-            return false;
+            final Blob blob = getBlob(key);
+            if (blob == null) {
+                outcome = TransferMetrics.Outcome.NOT_FOUND;
+                return false;
+            }
+
+            outcome = TransferMetrics.Outcome.SUCCESS;
+            return true;
+        } finally {
+            this.metrics.record(TransferMetrics.Operation.RESOURCE_EXISTS, outcome, start, 0);
+        }
+    }
+
+    // Checks all the resources with as few batch requests as possible, the result keeps the order of the resources
+    public Map<String, Boolean> resourcesExist(Collection<String> resources)
+            throws TransferFailedException, AuthorizationException {
+        final Map<BlobId, String> blobIds = new LinkedHashMap<>();
+        resources.forEach(r -> blobIds.put(BlobId.of(this.gcpResourceId.getBucket(), getKey(r)), r));
+        // The blobs that may keep sidecars in their metadata are looked up in the same batches
+        final Map<BlobId, BlobId> describedIds = new HashMap<>();
+        if (this.checksumMetadata) {
+            for (BlobId blobId : blobIds.keySet()) {
+                final String algorithm = ChecksumSidecars.algorithm(blobId.getName());
+                if (algorithm != null) {
+                    describedIds.put(blobId, BlobId.of(blobId.getBucket(),
+                            ChecksumSidecars.described(blobId.getName(), algorithm)));
+                }
+            }
         }
+        final Set<BlobId> lookups = new LinkedHashSet<>(blobIds.keySet());
+        lookups.addAll(describedIds.values());
 
-        return true;
+        final Map<BlobId, Blob> blobs;
+        try {
+            this.metrics.onMetadataLookups(lookups.size());
+            blobs = this.metadataCache.getAll(lookups, ids -> {
+                this.metrics.onMetadataCacheMisses(ids.size());
+                return withRetries(() -> this.metadataBatcher.getAll(ids));
+            });
+        } catch (StorageException e) {
+            throw new TransferFailedException(String.format("Failed to read %d resources", blobIds.size()), e);
+        }
+
+        final Map<String, Boolean> exists = new LinkedHashMap<>();
+        blobIds.forEach((blobId, resource) -> {
+            final BlobId describedId = describedIds.get(blobId);
+            final boolean sidecar = describedId != null && ChecksumSidecars.get(blobs.get(describedId),
+                    ChecksumSidecars.algorithm(blobId.getName())) != null;
+            exists.put(resource, sidecar || blobs.get(blobId) != null);
+        });
+        return exists;
     }
 
     @Override
     public List<String> getFileList(String prefix)
             throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
-        final String fullPrefix = getKey(prefix);
-        final Page<Blob> page = this.storage.list(this.gcpResourceId.getBucket(),
-                Storage.BlobListOption.prefix(fullPrefix));
-        final Iterable<Blob> blobIterable = page.iterateAll();
-        final List<String> allFileList = new ArrayList<>();
+        final long start = System.nanoTime();
+        TransferMetrics.Outcome outcome = TransferMetrics.Outcome.FAILURE;
+        try (Stream<String> names = listFiles(prefix, false)) {
+            final List<String> files = names.collect(Collectors.toList());
+            outcome = TransferMetrics.Outcome.SUCCESS;
+            return files;
+        } catch (StorageException e) {
+            throw new TransferFailedException(String.format("Failed to list %s", prefix), e);
+        } finally {
+            this.metrics.record(TransferMetrics.Operation.GET_FILE_LIST, outcome, start, 0);
+        }
+    }
 
-        blobIterable.forEach(b -> allFileList.add(b.getName()));
-        return allFileList;
+    // Lists the names of the blobs under the prefix lazily, fetching the next page only once the stream reaches it
+    // and with nothing but the names requested. In current directory mode only the immediate children are listed,
+    // with sub directories as names ending in a slash. Failures fetching later pages surface as StorageException.
+    public Stream<String> listFiles(String prefix, boolean currentDirectory) throws TransferFailedException {
+        String fullPrefix = getKey(prefix);
+        final List<Storage.BlobListOption> options = new ArrayList<>();
+        options.add(Storage.BlobListOption.fields(Storage.BlobField.NAME));
+        if (currentDirectory) {
+            if (!fullPrefix.isEmpty() && !fullPrefix.endsWith("/")) {
+                fullPrefix += "/";
+            }
+            options.add(Storage.BlobListOption.currentDirectory());
+        }
+        options.add(Storage.BlobListOption.prefix(fullPrefix));
+
+        final Page<Blob> page;
+        try {
+            page = withRetries(() -> storage().list(this.gcpResourceId.getBucket(),
+                    options.toArray(new Storage.BlobListOption[0])));
+        } catch (StorageException e) {
+            throw new TransferFailedException(String.format("Failed to list %s", prefix), e);
+        }
+        return StreamSupport.stream(page.iterateAll().spliterator(), false).map(BlobInfo::getName);
     }
 
     @Override
     public void putDirectory(File sourceDir, String destDir) throws
             TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
-        File[] files = sourceDir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                put(file, destDir + "/" + file.getName());
+        if (!sourceDir.isDirectory()) {
+            return;
+        }
+
+        final Path sourceRoot = sourceDir.toPath();
+        final TransferBatch batch = new TransferBatch(getTransferExecutor(), this.maxParallelUploads);
+        // Files.find streams the tree lazily so uploads start while the walk is still in progress and the
+        // batch blocks the walk whenever the maximum number of uploads are in flight. Symbolic links are followed,
+        // uploading the files they point to as the listing of the directory did.
+        try (Stream<Path> files = Files.find(sourceRoot, Integer.MAX_VALUE, (path, attrs) -> attrs.isRegularFile(),
+                FileVisitOption.FOLLOW_LINKS)) {
+            final Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                final Path file = iterator.next();
+                final String destination = destDir + "/" + toResourcePath(sourceRoot.relativize(file));
+                batch.submit(() -> put(file.toFile(), destination));
             }
+        } catch (IOException | UncheckedIOException e) {
+            throw new TransferFailedException(String.format("Failed to walk directory %s", sourceDir), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferFailedException(String.format("Interrupted while putting directory %s to %s",
+                    sourceDir, destDir), e);
+        } finally {
+            batch.await();
         }
     }
 
@@ -219,30 +1186,574 @@ public class GcpStorageWagon extends AbstractWagon {
         final BlobId blobId = BlobId.of(this.gcpResourceId.getBucket(), resource);
         final Blob blob;
         try {
-            blob = this.storage.get(blobId);
+            this.metrics.onMetadataLookups(1);
+            blob = this.metadataCache.get(blobId, id -> {
+                this.metrics.onMetadataCacheMisses(1);
+                return withRetries(() -> hedged(() -> this.metadataBatcher.get(id)));
+            });
         } catch (StorageException e) {
             throw new TransferFailedException(String.format("Failed to read %s", resource), e);
         }
         return blob;
     }
 
-    private void downloadInternal(Resource resource, Blob blob, File destination) throws TransferFailedException {
-        final TransferEvent transferProgressEvent = buildTransferProgressEvent(resource, TransferEvent.REQUEST_GET);
-        try (OutputStream outputStream = new FileOutputStream(destination);
-             ReadChannel reader = this.storage.reader(blob.getBlobId())) {
-            WritableByteChannel channel = Channels.newChannel(outputStream);
-            ByteBuffer bytes = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
-            int limit;
-            while ((limit = reader.read(bytes)) > 0) {
-                bytes.flip();
-                channel.write(bytes);
-                fireTransferProgress(transferProgressEvent, bytes.array(), limit);
-                bytes.clear();
-            }
-        } catch (FileNotFoundException fe) {
-            throw new TransferFailedException(String.format("Failed to write to %s", destination));
+    // Streams the file once, hashing it on the way. GCS only checks a CRC32C sent with the start of the upload, so
+    // unless the checksum cache already knows it the CRC32C GCS reports for the committed object is compared with
+    // it. Staged uploads go to a temporary object instead, which is copied over the target server side once it
+    // matches, so that a corrupted upload never replaces the target.
+    private void streamUpload(File source, String destination, BlobInfo blobInfo, TransferProgress progress)
+            throws TransferFailedException {
+        final String knownCrc32c = this.verifyChecksums && this.checksumCache != null
+                ? this.checksumCache.cached(source)
+                : null;
+        final BlobInfo uploadInfo = knownCrc32c != null ? blobInfo.toBuilder().setCrc32c(knownCrc32c).build() : blobInfo;
+        final boolean verified = this.verifyChecksums && knownCrc32c == null;
+        final boolean copied = verified && this.stagedUploads;
+        final CRC32C crc32c = new CRC32C();
+        final BlobId written;
+        try {
+            written = streamUpload(source, uploadInfo, copied, crc32c, progress);
+        } catch (IOException | StorageException e) {
+            throw new TransferFailedException(String.format("Failed to transfer %s to %s",
+                    source.getName(), destination), e);
+        }
+        if (copied) {
+            commitCopy(written, uploadInfo, Checksums.encode(crc32c.getValue()));
+        } else if (verified) {
+            verifyUpload(written, Checksums.encode(crc32c.getValue()));
+        }
+    }
+
+    // Writes the source to the target, or to a temporary object, continuing a recorded session if there is one.
+    // Returns the object written to.
+    private BlobId streamUpload(File source, BlobInfo uploadInfo, boolean temporary, CRC32C crc32c,
+                                TransferProgress progress) throws IOException {
+        final UploadJournal.Session session = findUploadSession(uploadInfo, source);
+        // A session writing to the target is not continued into a temporary object, nor the other way round
+        if (session != null && temporary != session.getBlobName().equals(uploadInfo.getName())) {
+            final BlobId sessionId = BlobId.of(uploadInfo.getBucket(), session.getBlobName());
+            try {
+                streamUpload(source, uploadInfo, sessionId, retrying(session.restore()), session.getOffset(), crc32c,
+                        progress);
+                return sessionId;
+            } catch (StorageException se) {
+                // The session expired or was cancelled, start a new one
+                if (se.getCode() != 404 && se.getCode() != 410) {
+                    throw se;
+                }
+                LOGGER.warn("Upload session of {} is gone, starting over", source, se);
+                crc32c.reset();
+            }
+        }
+
+        final BlobInfo writtenInfo = temporary ? BlobInfo.newBuilder(temporaryId(uploadInfo)).build() : uploadInfo;
+        final Storage.BlobWriteOption[] options = uploadInfo.getCrc32c() != null
+                ? new Storage.BlobWriteOption[]{Storage.BlobWriteOption.crc32cMatch()}
+                : new Storage.BlobWriteOption[0];
+        final WriteChannel writer = retrying(withRetries(() -> storage().writer(writtenInfo, options)));
+        writer.setChunkSize(this.bufferSize);
+        streamUpload(source, uploadInfo, writtenInfo.getBlobId(), writer, 0, crc32c, progress);
+        return writtenInfo.getBlobId();
+    }
+
+    // Writes the source from the offset on. The writer is only closed once everything is written, closing it earlier
+    // would finish the upload with partial content instead of leaving the session open to be resumed. The bytes
+    // before the offset are hashed from the file, as they were written by an earlier session.
+    private void streamUpload(File source, BlobInfo uploadInfo, BlobId writtenId, WriteChannel writer, long offset,
+                              CRC32C crc32c, TransferProgress progress) throws IOException {
+        final TransferProgress journaledProgress = journaled(uploadInfo, source, writtenId, writer, offset,
+                Checksums.crc32c(crc32c, progress));
+        try (FileChannel input = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            if (this.memoryMappedUploads && offset == 0) {
+                ChannelTransfers.copyMapped(input, writer, this.bufferSize, journaledProgress);
+            } else {
+                final BufferPool buffers = getDirectBuffers();
+                final ByteBuffer buffer = buffers.acquire();
+                try {
+                    Checksums.update(crc32c, input, offset, buffer);
+                    input.position(offset);
+                    ChannelTransfers.copy(input, writer, buffer, journaledProgress);
+                } finally {
+                    buffers.release(buffer);
+                }
+            }
+            writer.close();
+        }
+        if (this.uploadJournal != null) {
+            this.uploadJournal.remove(uploadInfo, source);
+        }
+    }
+
+    // Compares the CRC32C GCS reports for the committed upload with the one computed while sending it. A corrupted
+    // upload is deleted if the credentials allow it.
+    private void verifyUpload(BlobId blobId, String expected) throws TransferFailedException {
+        final Blob blob;
+        try {
+            blob = withRetries(() -> storage().get(blobId, Storage.BlobGetOption.fields(Storage.BlobField.CRC32C)));
+        } catch (StorageException e) {
+            throw new TransferFailedException(String.format("Failed to read %s", blobId.getName()), e);
+        }
+        // Like on downloads, a blob without a checksum can not be verified
+        if (blob != null && (blob.getCrc32c() == null || expected.equals(blob.getCrc32c()))) {
+            return;
+        }
+        try {
+            withRetries(() -> storage().delete(blobId));
+        } catch (StorageException e) {
+            LOGGER.warn("Failed to delete corrupted upload {}", blobId.getName(), e);
+        }
+        throw new TransferFailedException(String.format("Failed to verify %s, CRC32C %s does not match %s",
+                blobId.getName(), expected, blob != null ? blob.getCrc32c() : null));
+    }
+
+    // Copies the temporary object over the target once GCS reports the expected CRC32C for it, and deletes it
+    private void commitCopy(BlobId temporary, BlobInfo target, String expected) throws TransferFailedException {
+        try {
+            final Blob written = withRetries(() -> storage().get(temporary,
+                    Storage.BlobGetOption.fields(Storage.BlobField.CRC32C)));
+            // Like on downloads, an object without a checksum can not be verified
+            if (written == null || (written.getCrc32c() != null && !expected.equals(written.getCrc32c()))) {
+                throw new TransferFailedException(String.format("Failed to verify %s, CRC32C %s does not match %s",
+                        target.getName(), expected, written != null ? written.getCrc32c() : null));
+            }
+            withRetries(() -> storage().copy(Storage.CopyRequest.newBuilder()
+                    .setSource(temporary)
+                    .setTarget(target)
+                    .build()).getResult());
+        } catch (StorageException e) {
+            throw new TransferFailedException(String.format("Failed to copy %s to %s", temporary.getName(),
+                    target.getName()), e);
+        } finally {
+            try {
+                withRetries(() -> storage().delete(temporary));
+            } catch (StorageException e) {
+                LOGGER.warn("Failed to delete temporary upload {}", temporary.getName(), e);
+            }
+        }
+    }
+
+    // Temporary objects share the prefix of composite upload parts, so that leftovers of a killed process can be
+    // removed by a lifecycle rule on it, which the wagon does not create
+    private static BlobId temporaryId(BlobInfo target) {
+        return BlobId.of(target.getBucket(), String.format("%s%s/%s", CompositeUploader.PARTS_PREFIX,
+                UUID.randomUUID(), target.getName()));
+    }
+
+    private UploadJournal.Session findUploadSession(BlobInfo uploadInfo, File source) {
+        if (this.uploadJournal == null) {
+            return null;
+        }
+        try {
+            final UploadJournal.Session session = this.uploadJournal.find(uploadInfo, source, uploadInfo.getCrc32c());
+            if (session != null) {
+                LOGGER.info("Resuming upload of {} after {} bytes", source, session.getOffset());
+            }
+            return session;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read the upload journal of {}, starting over", source, e);
+            return null;
+        }
+    }
+
+    // Records the session state after every chunk handed to the writer
+    private TransferProgress journaled(BlobInfo uploadInfo, File source, BlobId writtenId, WriteChannel writer,
+                                       long offset, TransferProgress progress) {
+        if (this.uploadJournal == null) {
+            return progress;
+        }
+        final AtomicLong written = new AtomicLong(offset);
+        return data -> {
+            progress.update(data);
+            try {
+                this.uploadJournal.record(uploadInfo, source, uploadInfo.getCrc32c(), writtenId.getName(),
+                        written.addAndGet(data.remaining()), writer.capture());
+            } catch (IOException e) {
+                LOGGER.warn("Failed to record the upload session of {}", source, e);
+            }
+        };
+    }
+
+    private static TransferProgress counting(AtomicLong reported, TransferProgress progress) {
+        return data -> {
+            reported.addAndGet(data.remaining());
+            progress.update(data);
+        };
+    }
+
+    // Leaves out the given number of bytes at the start of the transfer
+    private static TransferProgress skipping(long bytes, TransferProgress progress) {
+        final AtomicLong remaining = new AtomicLong(bytes);
+        return data -> {
+            final int skipped = (int) Math.min(remaining.get(), data.remaining());
+            if (skipped == 0) {
+                progress.update(data);
+            } else if (skipped < data.remaining()) {
+                remaining.addAndGet(-skipped);
+                final ByteBuffer rest = data.duplicate();
+                rest.position(rest.position() + skipped);
+                progress.update(rest);
+            } else {
+                remaining.addAndGet(-skipped);
+            }
+        };
+    }
+
+    private boolean isCompositeUpload(long fileSize) {
+        return this.compositeUploadThreshold > 0
+                && fileSize >= this.compositeUploadThreshold
+                && this.compositeUploadParts > 1;
+    }
+
+    private void compositeUpload(File source, BlobInfo blobInfo, TransferProgress progress)
+            throws IOException {
+        final CompositeUploader uploader = new CompositeUploader(storage(), getTransferExecutor(),
+                this.compositeUploadParts, getDirectBuffers(), this.retryPolicy, this.circuitBreaker);
+        uploader.upload(source.toPath(), blobInfo, progress);
+    }
+
+    // Serves the blob from the local download cache when it holds the same generation, and caches it otherwise
+    private void downloadCached(Resource resource, Blob blob, File destination) throws TransferFailedException {
+        try (ProgressDispatcher progress = progressDispatcher(resource, TransferEvent.REQUEST_GET)) {
+            // The size of gzip encoded blobs is the one of the compressed content, which the cache can not check
+            if (this.downloadCache == null || blob.getGeneration() == null || blob.getSize() == null
+                    || GZIP_ENCODING.equals(blob.getContentEncoding())) {
+                downloadInternal(resource, blob, destination, progress);
+                return;
+            }
+            final AtomicLong reported = new AtomicLong();
+            if (fetchCached(resource, blob, destination, counting(reported, progress))) {
+                return;
+            }
+            // Listeners already saw the content of a corrupted entry
+            downloadInternal(resource, blob, destination, skipping(reported.get(), progress));
+        }
+        try {
+            this.downloadCache.store(blob.getBlobId(), blob.getGeneration(), destination.toPath());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to add {} to the download cache", resource, e);
+        }
+    }
+
+    // Copies the cached generation into the part file and verifies it like a download before it replaces the
+    // destination. A corrupted entry is removed and counts as a miss.
+    private boolean fetchCached(Resource resource, Blob blob, File destination, TransferProgress progress)
+            throws TransferFailedException {
+        final Path part = partFile(blob, destination);
+        final BufferPool buffers = getDirectBuffers();
+        final ByteBuffer buffer = buffers.acquire();
+        final CRC32C crc32c = new CRC32C();
+        final boolean hit;
+        try {
+            // A miss leaves the part file alone, it may hold a download to resume
+            hit = this.downloadCache.fetch(blob.getBlobId(), blob.getGeneration(), blob.getSize(), part, buffer,
+                    Checksums.crc32c(crc32c, progress));
+        } catch (IOException e) {
+            // The cache only saves time, the download starts over
+            LOGGER.warn("Failed to read {} from the download cache", resource, e);
+            this.metrics.onDownloadCacheLookup(false);
+            deletePartFile(part);
+            return false;
+        } finally {
+            buffers.release(buffer);
+        }
+        final String actual = Checksums.encode(crc32c.getValue());
+        if (hit && this.verifyChecksums && blob.getCrc32c() != null && !blob.getCrc32c().equals(actual)) {
+            LOGGER.warn("Ignoring cached {} with CRC32C {}, expected {}", resource, actual, blob.getCrc32c());
+            this.metrics.onDownloadCacheLookup(false);
+            deletePartFile(part);
+            try {
+                this.downloadCache.remove(blob.getBlobId(), blob.getGeneration());
+            } catch (IOException e) {
+                LOGGER.warn("Failed to remove {} from the download cache", resource, e);
+            }
+            return false;
+        }
+        this.metrics.onDownloadCacheLookup(hit);
+        if (!hit) {
+            return false;
+        }
+        this.downloadCache.recordHit();
+        try {
+            Files.move(part, destination.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Failed to move %s to %s", part, destination), e);
+        }
+        LOGGER.debug("Served {} from the download cache", resource);
+        return true;
+    }
+
+    // Downloads into a sibling part file that replaces the destination once complete, so that a failed download never
+    // leaves a truncated destination behind
+    private void downloadInternal(Resource resource, Blob blob, File destination, TransferProgress progress)
+            throws TransferFailedException {
+        final Path part = partFile(blob, destination);
+        final long crc32c;
+        if (isSlicedDownload(blob)) {
+            crc32c = slicedDownload(resource, blob, part.toFile(), progress);
+        } else {
+            crc32c = resumableDownload(resource, blob, part, progress);
+        }
+        final boolean encoded = GZIP_ENCODING.equals(blob.getContentEncoding());
+        final boolean compressed;
+        try {
+            // Content stored gzip encoded arrives as stored, unless something on the way decoded it already
+            compressed = encoded && GzipCompression.isCompressed(part);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Failed to read %s", part), e);
+        }
+        if (!encoded || compressed) {
+            verifyChecksum(resource, blob, part.toFile(), crc32c);
+        }
+        if (compressed) {
+            try {
+                GzipCompression.decompress(part, destination.toPath());
+            } catch (IOException e) {
+                throw new TransferFailedException(String.format("Failed to decompress %s to %s", part, destination), e);
+            } finally {
+                deletePartFile(part);
+            }
+            return;
+        }
+        try {
+            Files.move(part, destination.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Failed to move %s to %s", part, destination), e);
+        }
+    }
+
+    // The part file of a blob with a known generation survives failures, so that the next attempt, within this call or
+    // a later one, continues where the last one ended. The generation in the name keeps a newer version of the blob
+    // from being appended to the content of an older one.
+    private static Path partFile(Blob blob, File destination) {
+        final String suffix = blob.getGeneration() != null ? "-" + blob.getGeneration() + PART_SUFFIX : PART_SUFFIX;
+        return destination.toPath().resolveSibling(destination.getName() + suffix);
+    }
+
+    // Returns the CRC32C of the downloaded content
+    private long resumableDownload(Resource resource, Blob blob, Path part, TransferProgress transferProgress)
+            throws TransferFailedException {
+        // Only a pinned generation guarantees that every attempt reads the same content
+        final boolean resumable = blob.getGeneration() != null;
+        final BlobId blobId = BlobId.of(blob.getBucket(), blob.getName(), blob.getGeneration());
+        final BufferPool buffers = getDirectBuffers();
+        final ByteBuffer buffer = buffers.acquire();
+        final CRC32C crc32c = new CRC32C();
+        final AtomicLong written = new AtomicLong();
+        final TransferProgress progress = Checksums.crc32c(crc32c, transferProgress);
+        boolean keepPart = false;
+        try {
+            if (resumable) {
+                resumePartFile(part, crc32c, written, buffer);
+            }
+            for (int attempt = 0; ; attempt++) {
+                try (FileChannel output = FileChannel.open(part, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+                     ReadChannel reader = storage().reader(blobId)) {
+                    // Anything beyond what was reported as written may be incomplete
+                    output.truncate(written.get());
+                    output.position(written.get());
+                    reader.setChunkSize(this.bufferSize);
+                    reader.seek(written.get());
+                    ChannelTransfers.copy(reader, output, buffer, data -> {
+                        progress.update(data);
+                        written.addAndGet(data.remaining());
+                    });
+                    keepPart = true;
+                    return crc32c.getValue();
+                } catch (NoSuchFileException | AccessDeniedException fe) {
+                    throw new TransferFailedException(String.format("Failed to write to %s", part));
+                } catch (IOException | StorageException e) {
+                    if (!resumable || attempt >= this.downloadResumeAttempts || !isTransient(e)) {
+                        // Left for the next get to resume when the failure may go away
+                        keepPart = resumable && isTransient(e);
+                        throw new TransferFailedException(String.format("Failed to read from %s and write to %s",
+                                resource, part), e);
+                    }
+                    LOGGER.warn("Reading {} failed after {} bytes, resuming", resource, written.get(), e);
+                }
+            }
         } catch (IOException e) {
-            throw new TransferFailedException(String.format("Failed to read from %s and write to %s", resource, destination));
+            throw new TransferFailedException(String.format("Failed to read %s", part), e);
+        } finally {
+            buffers.release(buffer);
+            if (!keepPart) {
+                deletePartFile(part);
+            }
+        }
+    }
+
+    // Continues from the content a previous attempt left in the part file
+    private static void resumePartFile(Path part, CRC32C crc32c, AtomicLong written, ByteBuffer buffer)
+            throws IOException {
+        if (!Files.exists(part)) {
+            return;
+        }
+        try (FileChannel input = FileChannel.open(part, StandardOpenOption.READ)) {
+            Checksums.update(crc32c, input, buffer);
+            written.set(input.size());
+        }
+        LOGGER.debug("Resuming download into {} after {} bytes", part, written.get());
+    }
+
+    private static void deletePartFile(Path part) {
+        try {
+            Files.deleteIfExists(part);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete {}", part, e);
+        }
+    }
+
+    private static boolean isTransient(Exception e) {
+        return !(e instanceof StorageException) || RetryPolicy.isRetryable((StorageException) e);
+    }
+
+    private <T> T withRetries(RetryPolicy.Operation<T> operation) {
+        return this.retryPolicy.call(this.circuitBreaker, operation);
+    }
+
+    private WriteChannel retrying(WriteChannel writer) {
+        return new RetryingWriteChannel(writer, this.retryPolicy, this.circuitBreaker);
+    }
+
+    // Metadata reads are idempotent, so a slow one may be raced by a second attempt
+    private <T> T hedged(Supplier<T> read) {
+        return this.hedgedReader != null ? this.hedgedReader.call(read) : read.get();
+    }
+
+    // Compares the CRC32C computed while downloading with the one GCS stored, a corrupted download is deleted
+    private void verifyChecksum(Resource resource, Blob blob, File download, long crc32c)
+            throws TransferFailedException {
+        if (!this.verifyChecksums || blob.getCrc32c() == null) {
+            return;
+        }
+        final String actual = Checksums.encode(crc32c);
+        if (!actual.equals(blob.getCrc32c())) {
+            if (!download.delete()) {
+                LOGGER.warn("Failed to delete corrupted download {}", download);
+            }
+            throw new TransferFailedException(String.format("Failed to verify %s, CRC32C %s does not match %s",
+                    resource, actual, blob.getCrc32c()));
+        }
+    }
+
+    // Adapts progress reported on (possibly direct) buffers, from one or more threads, to wagon transfer events
+    // Transfers without listeners skip the dispatch altogether
+    private ProgressDispatcher progressDispatcher(Resource resource, int requestType) {
+        final TransferEvent transferProgressEvent = buildTransferProgressEvent(resource, requestType);
+        return new ProgressDispatcher(transferProgressEvent, hasTransferListeners() ? this::fireTransferProgress : null,
+                getProgressBuffers(), this.progressInterval);
+    }
+
+    private Storage storage() {
+        Storage current = this.storage;
+        if (current == null) {
+            synchronized (this) {
+                current = this.storage;
+                if (current == null) {
+                    if (this.gcpResourceId == null) {
+                        throw new IllegalStateException("The wagon is not connected");
+                    }
+                    this.storageClientSettings = buildStorageClientSettings();
+                    current = StorageClientCache.getInstance().acquire(this.storageClientSettings);
+                    this.storage = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Creates the client and opens a connection in the background, so that the first transfer does not wait for the
+    // credentials and the TLS handshake. Whatever the lookup answers is of no interest.
+    private void warmUp() {
+        final BlobId blobId = BlobId.of(this.gcpResourceId.getBucket(), this.baseDir);
+        this.warmUp = getTransferExecutor().submit(() -> {
+            try {
+                storage().get(blobId, Storage.BlobGetOption.fields(Storage.BlobField.NAME));
+            } catch (RuntimeException e) {
+                LOGGER.debug("Warming up the connection to {} failed", blobId.getBucket(), e);
+            }
+        });
+    }
+
+    private synchronized ExecutorService getTransferExecutor() {
+        if (this.transferExecutor == null) {
+            // Concurrency is bounded by the callers, the pool itself only recycles threads
+            this.transferExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                    .setNameFormat("gcp-storage-wagon-transfer-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        return this.transferExecutor;
+    }
+
+    // Buffer pools are shared by the wagons of the process, a disconnected wagon holds no buffers of its own
+    private BufferPool getDirectBuffers() {
+        return BufferPool.shared(this.bufferSize, MAX_POOLED_BUFFERS, true);
+    }
+
+    private BufferPool getHeapBuffers() {
+        return BufferPool.shared(this.bufferSize, MAX_POOLED_BUFFERS, false);
+    }
+
+    // Progress dispatchers only ever fill a fraction of a transfer buffer
+    private static BufferPool getProgressBuffers() {
+        return BufferPool.shared(ProgressDispatcher.COALESCED_BYTES, MAX_POOLED_BUFFERS, false);
+    }
+
+    // Holds files up to the threshold, as many are pooled as single shot uploads ever ran at once
+    private BufferPool getSingleShotBuffers() {
+        return BufferPool.shared(this.singleShotUploadThreshold, MAX_POOLED_BUFFERS, false);
+    }
+
+    private synchronized AsyncTransfers getAsyncTransfers() {
+        if (this.asyncTransfers == null) {
+            Executor executor = this.asyncExecutor;
+            if (executor == null) {
+                this.virtualThreadExecutor = AsyncTransfers.newVirtualThreadExecutor();
+                executor = this.virtualThreadExecutor != null ? this.virtualThreadExecutor : getTransferExecutor();
+            }
+            this.asyncTransfers = new AsyncTransfers(executor, this.maxInFlightTransfers);
+        }
+        return this.asyncTransfers;
+    }
+
+    // Transfers already submitted still run to completion
+    private synchronized void shutdownAsyncTransfers() {
+        if (this.virtualThreadExecutor != null) {
+            this.virtualThreadExecutor.shutdown();
+            this.virtualThreadExecutor = null;
+        }
+        this.asyncTransfers = null;
+    }
+
+    private synchronized void shutdownTransferExecutor() {
+        if (this.transferExecutor != null) {
+            this.transferExecutor.shutdown();
+            this.transferExecutor = null;
+        }
+    }
+
+    private static String toResourcePath(Path relativePath) {
+        return relativePath.toString().replace(File.separatorChar, '/');
+    }
+
+    private boolean isSlicedDownload(Blob blob) {
+        return this.slicedDownloadThreshold > 0
+                && blob.getSize() != null
+                && blob.getSize() >= this.slicedDownloadThreshold
+                && this.slicedDownloadParts > 1;
+    }
+
+    // Slices are written out of order, so a failed sliced download starts over
+    private long slicedDownload(Resource resource, Blob blob, File destination, TransferProgress progress)
+            throws TransferFailedException {
+        final SlicedDownloader downloader = new SlicedDownloader(storage(), getTransferExecutor(),
+                this.slicedDownloadParts, getDirectBuffers(), this.retryPolicy, this.circuitBreaker);
+        try {
+            return downloader.download(blob, destination.toPath(), progress);
+        } catch (IOException | StorageException e) {
+            deletePartFile(destination.toPath());
+            throw new TransferFailedException(String.format("Failed to read from %s and write to %s",
+                    resource, destination), e);
         }
     }
 
@@ -250,20 +1761,26 @@ public class GcpStorageWagon extends AbstractWagon {
         return this.baseDir + resource;
     }
 
-    private TransportOptions buildTransportOptions() {
-        final HttpClient client = ApacheHttpTransport.newDefaultHttpClient();
-        return HttpTransportOptions.newBuilder()
-                .setConnectTimeout(getTimeout())
-                .setReadTimeout(getReadTimeout())
-                .setHttpTransportFactory(() -> new ApacheHttpTransport(client))
-                .build();
+    @VisibleForTesting
+    StorageClientSettings buildStorageClientSettings() {
+        return new StorageClientSettings(this.gcpResourceId.getProjectId(), getTimeout(), getReadTimeout(),
+                this.maxConnections, this.connectionKeepAlive, resolveProxyInfo());
     }
 
-    private StorageOptions buildStorageOptions() {
-        return StorageOptions.newBuilder()
-                .setTransportOptions(buildTransportOptions())
-                .setProjectId(this.gcpResourceId.getProjectId())
-                .build();
+    private ProxyInfo resolveProxyInfo() {
+        final ProxyInfoProvider proxyInfoProvider = getProxyInfoProvider();
+        if (proxyInfoProvider == null) {
+            return null;
+        }
+        ProxyInfo proxyInfo = proxyInfoProvider.getProxyInfo("https");
+        if (proxyInfo == null) {
+            proxyInfo = proxyInfoProvider.getProxyInfo("http");
+        }
+        if (proxyInfo == null || proxyInfo.getHost() == null
+                || ProxyUtils.validateNonProxyHosts(proxyInfo, STORAGE_HOST)) {
+            return null;
+        }
+        return proxyInfo;
     }
 
     private TransferEvent buildTransferProgressEvent(Resource resource, int requestType) {
@@ -275,6 +1792,16 @@ public class GcpStorageWagon extends AbstractWagon {
         return this.gcpResourceId.getProjectId();
     }
 
+    @VisibleForTesting
+    Storage getStorage() {
+        return storage();
+    }
+
+    @VisibleForTesting
+    boolean hasStorage() {
+        return this.storage != null;
+    }
+
     @VisibleForTesting
     String getBucket() {
         return this.gcpResourceId.getBucket();
@@ -0,0 +1,68 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.BlobId;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Remembers the generation of every blob downloaded to a local file, together with the size and modification time
+// the file had right after the download. As long as the file is unchanged, the generation tells whether the blob
+// changed since without transferring it again. The records are persisted as a properties file shared by builds.
+final class GenerationStore {
+
+    private static final String SEPARATOR = " ";
+
+    private final LocalFileRecords records;
+
+    GenerationStore(Path file) {
+        this(new LocalFileRecords(file, GenerationStore::isGeneration));
+    }
+
+    private GenerationStore(LocalFileRecords records) {
+        this.records = records;
+    }
+
+    // The store of the file shared by all wagons of the process, read from disk only by the first of them
+    static GenerationStore shared(Path file) throws IOException {
+        return new GenerationStore(LocalFileRecords.shared(file, GenerationStore::isGeneration));
+    }
+
+    // Reads the file on its own, as another process would
+    static GenerationStore load(Path file) throws IOException {
+        return new GenerationStore(LocalFileRecords.load(file, GenerationStore::isGeneration));
+    }
+
+    // Returns the generation last downloaded to the destination, or null if the destination changed since
+    Long get(BlobId blobId, File destination) {
+        final String generation = this.records.get(key(blobId, destination), destination);
+        return generation != null ? Long.valueOf(generation) : null;
+    }
+
+    // Must be called once the destination holds the content of the given generation
+    void put(BlobId blobId, long generation, File destination) {
+        this.records.put(key(blobId, destination), destination, destination.length(), destination.lastModified(),
+                Long.toString(generation));
+    }
+
+    int size() {
+        return this.records.size();
+    }
+
+    void save() throws IOException {
+        this.records.save();
+    }
+
+    private static boolean isGeneration(String value) {
+        try {
+            Long.parseLong(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String key(BlobId blobId, File destination) {
+        return blobId.getBucket() + "/" + blobId.getName() + SEPARATOR + destination.getAbsolutePath();
+    }
+}
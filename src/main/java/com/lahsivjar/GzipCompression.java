@@ -0,0 +1,105 @@
+package com.lahsivjar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Content stored with Content-Encoding: gzip. GCS keeps it compressed and serves it as stored to clients accepting
+// gzip, which the storage client always does, so the content is compressed on its way up and decompressed only once
+// a download is complete.
+final class GzipCompression {
+
+    private static final int DEFLATE_BUFFER_SIZE = 64 * 1024;
+    private static final byte MAGIC_FIRST = (byte) 0x1f;
+    private static final byte MAGIC_SECOND = (byte) 0x8b;
+
+    private GzipCompression() {
+    }
+
+    // Upper bound of the compressed size of the given number of bytes, zlib's bound plus the gzip header and trailer
+    static long maxCompressedSize(long size) {
+        return size + (size >> 12) + (size >> 14) + (size >> 25) + 13 + 18;
+    }
+
+    // Compresses the remaining input into the target, which has to hold at least maxCompressedSize of the input. The
+    // buffer has to be a heap buffer, the input is reported to the progress as it is read.
+    static void compress(ReadableByteChannel input, ByteBuffer target, ByteBuffer buffer,
+                         TransferProgress progress) throws IOException {
+        try {
+            compress(input, new ByteBufferOutputStream(target), buffer, progress);
+        } catch (BufferOverflowException e) {
+            throw new IOException(String.format("Failed to compress into %d bytes", target.capacity()), e);
+        }
+        target.flip();
+    }
+
+    // Compresses the remaining input into the output and closes it
+    static void compress(ReadableByteChannel input, OutputStream output, ByteBuffer buffer,
+                         TransferProgress progress) throws IOException {
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output, DEFLATE_BUFFER_SIZE)) {
+            buffer.clear();
+            while (input.read(buffer) >= 0) {
+                buffer.flip();
+                gzip.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                progress.update(buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    static boolean isCompressed(Path file) throws IOException {
+        final ByteBuffer magic = ByteBuffer.allocate(2);
+        try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (magic.hasRemaining()) {
+                if (input.read(magic) < 0) {
+                    return false;
+                }
+            }
+        }
+        return magic.get(0) == MAGIC_FIRST && magic.get(1) == MAGIC_SECOND;
+    }
+
+    // Replaces the target only once the whole source is decompressed
+    static void decompress(Path source, Path target) throws IOException {
+        final Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(),
+                target.getFileName().toString(), ".tmp");
+        try {
+            try (InputStream input = new GZIPInputStream(Files.newInputStream(source), DEFLATE_BUFFER_SIZE)) {
+                Files.copy(input, temporary, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Fails with BufferOverflowException once the buffer is full
+    private static final class ByteBufferOutputStream extends OutputStream {
+
+        private final ByteBuffer target;
+
+        private ByteBufferOutputStream(ByteBuffer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) {
+            this.target.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            this.target.put(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.lahsivjar;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Sends a second attempt of an idempotent read when the first one takes longer than the 95th percentile of recent
+// reads, and answers with whichever attempt succeeds first. Trades a few percent more requests for a shorter tail.
+// Both attempts run on the executor, so the caller answers as soon as either succeeds and an attempt that is still
+// stuck finishes in the background.
+final class HedgedReads {
+
+    private static final int SAMPLES = 128;
+    private static final double PERCENTILE = 0.95;
+    // Latencies of a bucket are shared by all wagons of the process, so that they outlive a connection
+    private static final ConcurrentMap<String, Latencies> BUCKETS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("gcp-storage-wagon-hedge").setDaemon(true).build());
+
+    private final Executor executor;
+    private final long minDelayNanos;
+    private final Latencies latencies;
+    private long hedged;
+
+    HedgedReads(Executor executor, long minDelayMillis) {
+        this(executor, minDelayMillis, new Latencies());
+    }
+
+    private HedgedReads(Executor executor, long minDelayMillis, Latencies latencies) {
+        this.executor = executor;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, minDelayMillis));
+        this.latencies = latencies;
+    }
+
+    static HedgedReads forBucket(String bucket, Executor executor, long minDelayMillis) {
+        return new HedgedReads(executor, minDelayMillis, BUCKETS.computeIfAbsent(bucket, b -> new Latencies()));
+    }
+
+    <T> T call(Supplier<T> read) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final AtomicInteger pending = new AtomicInteger(1);
+        final ScheduledFuture<?> hedge = TIMER.schedule(() -> {
+            // Only hedge while the first attempt is still running
+            if (!result.isDone() && pending.incrementAndGet() > 1) {
+                synchronized (this) {
+                    this.hedged++;
+                }
+                this.executor.execute(() -> attempt(read, result, pending));
+            }
+        }, hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+        result.whenComplete((value, failure) -> hedge.cancel(false));
+        this.executor.execute(() -> attempt(read, result, pending));
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    synchronized long hedged() {
+        return this.hedged;
+    }
+
+    long hedgeDelayNanos() {
+        return Math.max(this.minDelayNanos, this.latencies.percentile(PERCENTILE));
+    }
+
+    private <T> void attempt(Supplier<T> read, CompletableFuture<T> result, AtomicInteger pending) {
+        final long start = System.nanoTime();
+        try {
+            final T value = read.get();
+            this.latencies.record(System.nanoTime() - start);
+            result.complete(value);
+        } catch (RuntimeException e) {
+            // The failure only counts once no other attempt can succeed any more
+            if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new CompletionException(cause);
+    }
+
+    // The most recent read latencies
+    private static final class Latencies {
+
+        private final long[] samples = new long[SAMPLES];
+        private int recorded;
+        private int next;
+
+        synchronized void record(long latencyNanos) {
+            this.samples[this.next] = latencyNanos;
+            this.next = (this.next + 1) % SAMPLES;
+            this.recorded = Math.min(this.recorded + 1, SAMPLES);
+        }
+
+        // Zero until a read was recorded
+        synchronized long percentile(double percentile) {
+            final int count = this.recorded;
+            if (count == 0) {
+                return 0;
+            }
+            final long[] sorted = Arrays.copyOf(this.samples, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(percentile * count) - 1];
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.lahsivjar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+// Values recorded for local files, valid for as long as a file keeps the size and modification time it had when its
+// value was recorded. The records are kept in a properties file shared by the builds on the machine, which is read
+// once per process. Saving appends the records changed since, later records of a key replace earlier ones on load.
+// Records of files that changed or are gone are dropped on load, and the file is rewritten with the remaining records
+// once less than half of it is still current.
+final class LocalFileRecords {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalFileRecords.class);
+
+    private static final String SEPARATOR = " ";
+    private static final ConcurrentMap<Path, LocalFileRecords> SHARED = new ConcurrentHashMap<>();
+    // File locks are held per process, threads of one process are serialized on these
+    private static final ConcurrentMap<Path, Object> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final Predicate<String> validValue;
+    private final Map<String, Record> records = new HashMap<>();
+    // Records changed by this process and not saved yet
+    private final Map<String, Record> changes = new LinkedHashMap<>();
+
+    // Values must not contain spaces, the predicate tells values of malformed records apart
+    LocalFileRecords(Path file, Predicate<String> validValue) {
+        this.file = file.toAbsolutePath().normalize();
+        this.validValue = validValue;
+    }
+
+    // The records of the file as seen by this process, loaded by the first caller
+    static LocalFileRecords shared(Path file, Predicate<String> validValue) throws IOException {
+        final Path normalized = file.toAbsolutePath().normalize();
+        final LocalFileRecords existing = SHARED.get(normalized);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (SHARED) {
+            LocalFileRecords records = SHARED.get(normalized);
+            if (records == null) {
+                records = load(normalized, validValue);
+                SHARED.put(normalized, records);
+            }
+            return records;
+        }
+    }
+
+    // Reads the records of the file on its own, as another process would
+    static LocalFileRecords load(Path file, Predicate<String> validValue) throws IOException {
+        final LocalFileRecords records = new LocalFileRecords(file, validValue);
+        records.load();
+        return records;
+    }
+
+    // Returns the value recorded under the key, or null if there is none or the file changed since
+    synchronized String get(String key, File file) {
+        final Record record = this.records.get(key);
+        if (record == null) {
+            return null;
+        }
+        if (!record.isCurrent(file)) {
+            this.records.remove(key);
+            return null;
+        }
+        return record.value;
+    }
+
+    // Records the value of the file as it was at the given size and modification time
+    synchronized void put(String key, File file, long size, long lastModified, String value) {
+        final Record record = new Record(size, lastModified, value, file.getAbsolutePath());
+        this.records.put(key, record);
+        this.changes.put(key, record);
+    }
+
+    synchronized int size() {
+        return this.records.size();
+    }
+
+    synchronized void save() throws IOException {
+        if (this.changes.isEmpty()) {
+            return;
+        }
+        final Properties appended = new Properties();
+        this.changes.forEach((key, record) -> appended.setProperty(key, record.format()));
+        Files.createDirectories(this.file.getParent());
+        withLock(() -> {
+            try (OutputStream output = Files.newOutputStream(this.file, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND)) {
+                appended.store(output, null);
+            }
+        });
+        this.changes.clear();
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(this.file)) {
+            return;
+        }
+        withLock(() -> {
+            final Properties stored = new Properties();
+            try (InputStream input = Files.newInputStream(this.file)) {
+                stored.load(input);
+            }
+            for (String key : stored.stringPropertyNames()) {
+                final Record record = Record.parse(stored.getProperty(key));
+                if (record == null || !this.validValue.test(record.value)) {
+                    LOGGER.debug("Skipping malformed record of {} in {}", key, this.file);
+                } else if (record.isCurrent(new File(record.path))) {
+                    this.records.put(key, record);
+                }
+            }
+            compact();
+        });
+    }
+
+    // Called with the lock held
+    private void compact() throws IOException {
+        final Properties current = new Properties();
+        this.records.forEach((key, record) -> current.setProperty(key, record.format()));
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        current.store(content, null);
+        if (Files.size(this.file) <= 2L * content.size()) {
+            return;
+        }
+        final Path temporary = Files.createTempFile(this.file.getParent(), this.file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, content.toByteArray());
+            Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void withLock(LockedAction action) throws IOException {
+        synchronized (PROCESS_LOCKS.computeIfAbsent(this.file, f -> new Object())) {
+            final Path lockFile = this.file.resolveSibling(this.file.getFileName() + ".lock");
+            try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                final FileLock lock = lockChannel.lock();
+                try {
+                    action.run();
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    private interface LockedAction {
+        void run() throws IOException;
+    }
+
+    private static final class Record {
+
+        private final long size;
+        private final long lastModified;
+        private final String value;
+        private final String path;
+
+        private Record(long size, long lastModified, String value, String path) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.value = value;
+            this.path = path;
+        }
+
+        // The path comes last as it may contain the separator, returns null for malformed records
+        private static Record parse(String record) {
+            final String[] fields = record.split(SEPARATOR, 4);
+            if (fields.length != 4 || fields[2].isEmpty() || fields[3].isEmpty()) {
+                return null;
+            }
+            try {
+                return new Record(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2], fields[3]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private String format() {
+            return this.size + SEPARATOR + this.lastModified + SEPARATOR + this.value + SEPARATOR + this.path;
+        }
+
+        private boolean isCurrent(File file) {
+            return file.isFile() && file.length() == this.size && file.lastModified() == this.lastModified;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.lahsivjar;
+
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import com.google.cloud.ServiceOptions;
+import com.google.cloud.http.HttpTransportOptions;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.conn.params.ConnRouteParams;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.ProxySelectorRoutePlanner;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+
+import java.net.ProxySelector;
+
+// A storage client together with the connection pool of its http transport. ApacheHttpTransport of this version of the
+// http client only takes the deprecated HttpClient 4.0 style client.
+@SuppressWarnings("deprecation")
+final class PooledStorageClient {
+
+    private final Storage storage;
+    private final PoolingClientConnectionManager connectionManager;
+
+    PooledStorageClient(Storage storage, PoolingClientConnectionManager connectionManager) {
+        this.storage = storage;
+        this.connectionManager = connectionManager;
+    }
+
+    static PooledStorageClient create(StorageClientSettings settings) {
+        final DefaultHttpClient client = newHttpClient(settings);
+        final HttpTransportOptions transportOptions = HttpTransportOptions.newBuilder()
+                .setConnectTimeout(settings.getConnectTimeout())
+                .setReadTimeout(settings.getReadTimeout())
+                .setHttpTransportFactory(() -> new ApacheHttpTransport(client))
+                .build();
+        final Storage storage = storageOptions(settings, transportOptions).getService();
+        return new PooledStorageClient(storage, (PoolingClientConnectionManager) client.getConnectionManager());
+    }
+
+    // The wagon retries with its own policy, retries of the client would multiply with it
+    static StorageOptions storageOptions(StorageClientSettings settings, HttpTransportOptions transportOptions) {
+        return StorageOptions.newBuilder()
+                .setTransportOptions(transportOptions)
+                .setProjectId(settings.getProjectId())
+                .setRetrySettings(ServiceOptions.getNoRetrySettings())
+                .build();
+    }
+
+    // Mirrors ApacheHttpTransport.newDefaultHttpClient, but with a connection pool sized for parallel transfers
+    // to a single host and a bounded keep alive
+    static DefaultHttpClient newHttpClient(StorageClientSettings settings) {
+        final SchemeRegistry registry = SchemeRegistryFactory.createDefault();
+        final PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager(registry);
+        connectionManager.setMaxTotal(settings.getMaxConnections());
+        // All requests go to the same host, so the route limit is the pool limit
+        connectionManager.setDefaultMaxPerRoute(settings.getMaxConnections());
+
+        final HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setStaleCheckingEnabled(params, false);
+        HttpConnectionParams.setSocketBufferSize(params, 8192);
+
+        final DefaultHttpClient client = new DefaultHttpClient(connectionManager, params);
+        // The wagon retries on its own
+        client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+        client.setKeepAliveStrategy((response, context) -> {
+            final long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? Math.min(keepAlive, settings.getKeepAliveMillis()) : settings.getKeepAliveMillis();
+        });
+
+        if (settings.hasProxy()) {
+            ConnRouteParams.setDefaultProxy(params, new HttpHost(settings.getProxyHost(), settings.getProxyPort()));
+            if (settings.getProxyUserName() != null) {
+                client.getCredentialsProvider().setCredentials(
+                        new AuthScope(settings.getProxyHost(), settings.getProxyPort()),
+                        new UsernamePasswordCredentials(settings.getProxyUserName(), settings.getProxyPassword()));
+            }
+        } else {
+            client.setRoutePlanner(new ProxySelectorRoutePlanner(registry, ProxySelector.getDefault()));
+        }
+        return client;
+    }
+
+    Storage getStorage() {
+        return this.storage;
+    }
+
+    PoolingClientConnectionManager getConnectionManager() {
+        return this.connectionManager;
+    }
+
+    void close() {
+        this.connectionManager.shutdown();
+    }
+}
@@ -0,0 +1,89 @@
+package com.lahsivjar;
+
+import org.apache.maven.wagon.events.TransferEvent;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Collects the transferred bytes of one transfer into a pooled buffer and hands them to the listeners once the buffer
+// is full or the interval since the last event has passed, so that small reads do not turn into as many events.
+// The remainder is passed on when the dispatcher is closed. Bytes reach the listeners in the order they are reported,
+// which is the order of the content only for sequential transfers, parts of sliced and composite transfers report
+// concurrently. Without listeners nothing is copied at all.
+final class ProgressDispatcher implements TransferProgress, AutoCloseable {
+
+    // Only collect as much as stays in the processor caches
+    static final int COALESCED_BYTES = 64 * 1024;
+
+    private final TransferEvent event;
+    private final Sink sink;
+    private final BufferPool buffers;
+    private final long intervalNanos;
+    private final LongSupplier nanoClock;
+    private ByteBuffer pending;
+    private long lastFired;
+
+    ProgressDispatcher(TransferEvent event, Sink sink, BufferPool buffers, long intervalMillis) {
+        this(event, sink, buffers, intervalMillis, System::nanoTime);
+    }
+
+    // A null sink stands for a transfer without listeners
+    ProgressDispatcher(TransferEvent event, Sink sink, BufferPool buffers, long intervalMillis, LongSupplier nanoClock) {
+        this.event = event;
+        this.sink = sink;
+        this.buffers = buffers;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, intervalMillis));
+        this.nanoClock = nanoClock;
+        this.lastFired = nanoClock.getAsLong();
+    }
+
+    // Parts of a transfer may report their progress concurrently, the listeners are only ever called by one of them
+    @Override
+    public synchronized void update(ByteBuffer data) {
+        if (this.sink == null || !data.hasRemaining()) {
+            return;
+        }
+        if (this.pending == null) {
+            this.pending = this.buffers.acquire();
+            this.pending.limit(Math.min(this.pending.capacity(), COALESCED_BYTES));
+        }
+        // Copy without a duplicate of the buffer and leave its position as it was
+        final int position = data.position();
+        while (data.hasRemaining()) {
+            final int length = Math.min(data.remaining(), this.pending.remaining());
+            data.get(this.pending.array(), this.pending.position(), length);
+            this.pending.position(this.pending.position() + length);
+            if (!this.pending.hasRemaining()) {
+                fire();
+            }
+        }
+        data.position(position);
+        if (this.pending.position() > 0 && this.nanoClock.getAsLong() - this.lastFired >= this.intervalNanos) {
+            fire();
+        }
+    }
+
+    // Passes on what is left, which has to happen before the transfer is reported complete
+    @Override
+    public synchronized void close() {
+        if (this.pending == null) {
+            return;
+        }
+        if (this.pending.position() > 0) {
+            fire();
+        }
+        this.buffers.release(this.pending);
+        this.pending = null;
+    }
+
+    private void fire() {
+        this.sink.fire(this.event, this.pending.array(), this.pending.position());
+        this.pending.clear().limit(Math.min(this.pending.capacity(), COALESCED_BYTES));
+        this.lastFired = this.nanoClock.getAsLong();
+    }
+
+    interface Sink {
+        void fire(TransferEvent event, byte[] buffer, int length);
+    }
+}
@@ -0,0 +1,110 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+// Retries storage operations that fail with throttling, server or connection errors, with exponential backoff and
+// full jitter. Every operation has an overall deadline, attempts that would start after it are not made.
+final class RetryPolicy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryPolicy.class);
+
+    private static final int HTTP_REQUEST_TIMEOUT = 408;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long deadlineMillis;
+    private final LongSupplier clock;
+    private final Sleeper sleeper;
+    private final Runnable onRetry;
+
+    // A deadline of zero or less lets the attempts alone bound an operation
+    RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, long deadlineMillis,
+                Runnable onRetry) {
+        this(maxAttempts, initialBackoffMillis, maxBackoffMillis, deadlineMillis, System::currentTimeMillis,
+                Thread::sleep, onRetry);
+    }
+
+    RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, long deadlineMillis,
+                LongSupplier clock, Sleeper sleeper, Runnable onRetry) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = Math.max(0, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+        this.deadlineMillis = deadlineMillis;
+        this.clock = clock;
+        this.sleeper = sleeper;
+        this.onRetry = onRetry;
+    }
+
+    // The circuit breaker is optional
+    <T> T call(CircuitBreaker circuitBreaker, Operation<T> operation) {
+        final long start = this.clock.getAsLong();
+        for (int attempt = 1; ; attempt++) {
+            if (circuitBreaker != null) {
+                circuitBreaker.acquire();
+            }
+            try {
+                final T result = operation.call();
+                if (circuitBreaker != null) {
+                    circuitBreaker.onSuccess();
+                }
+                return result;
+            } catch (StorageException e) {
+                final boolean retryable = isRetryable(e);
+                if (circuitBreaker != null) {
+                    circuitBreaker.onFailure(retryable);
+                }
+                final long backoff = backoff(attempt);
+                if (!retryable || attempt >= this.maxAttempts || pastDeadline(start, backoff)) {
+                    throw e;
+                }
+                LOGGER.debug("Attempt {} failed with {}, retrying in {} ms", attempt, e.getCode(), backoff, e);
+                sleep(backoff, e);
+                this.onRetry.run();
+            }
+        }
+    }
+
+    static boolean isRetryable(StorageException e) {
+        if (CircuitBreaker.isRejection(e)) {
+            return false;
+        }
+        final int code = e.getCode();
+        // Code 0 stands for errors of the connection rather than responses
+        return e.isRetryable() || code == 0 || code == HTTP_REQUEST_TIMEOUT || code == HTTP_TOO_MANY_REQUESTS
+                || code >= 500;
+    }
+
+    // Full jitter, a random backoff up to the exponentially growing cap spreads out clients throttled together
+    private long backoff(int attempt) {
+        final long cap = Math.min(this.maxBackoffMillis, this.initialBackoffMillis << Math.min(attempt - 1, 30));
+        return cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+    }
+
+    private boolean pastDeadline(long start, long backoff) {
+        return this.deadlineMillis > 0 && this.clock.getAsLong() + backoff - start >= this.deadlineMillis;
+    }
+
+    private void sleep(long millis, StorageException failure) {
+        try {
+            this.sleeper.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure;
+        }
+    }
+
+    interface Operation<T> {
+        T call();
+    }
+
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+}
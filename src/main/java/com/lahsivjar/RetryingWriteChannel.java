@@ -0,0 +1,73 @@
+package com.lahsivjar;
+
+import com.google.cloud.RestorableState;
+import com.google.cloud.WriteChannel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+// Retries the chunk uploads of a write channel with the retry policy of the wagon, as the storage client makes a
+// single attempt of every request. A write failing to upload a chunk has already taken its bytes into the buffer of
+// the channel, so the retries write what is left of the source, if anything, which flushes that buffer again.
+// Closing retries the upload of the last chunk.
+final class RetryingWriteChannel implements WriteChannel {
+
+    private final WriteChannel delegate;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+
+    // The circuit breaker is optional
+    RetryingWriteChannel(WriteChannel delegate, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        final int length = src.remaining();
+        // What a failed attempt left of the source is written again, nothing if it was all taken in
+        call(() -> this.delegate.write(src));
+        return length - src.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        call(this.delegate::close);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.delegate.isOpen();
+    }
+
+    @Override
+    public void setChunkSize(int chunkSize) {
+        this.delegate.setChunkSize(chunkSize);
+    }
+
+    @Override
+    public RestorableState<WriteChannel> capture() {
+        return this.delegate.capture();
+    }
+
+    private void call(ChannelOperation operation) throws IOException {
+        try {
+            this.retryPolicy.call(this.circuitBreaker, () -> {
+                try {
+                    operation.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private interface ChannelOperation {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,128 @@
+package com.lahsivjar;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32C;
+
+final class SlicedDownloader {
+
+    // Same as the client's default read chunk size
+    static final int READ_CHUNK_SIZE = 2 * 1024 * 1024;
+
+    private final Storage storage;
+    private final Executor executor;
+    private final int slices;
+    private final BufferPool buffers;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+
+    // The circuit breaker is optional
+    SlicedDownloader(Storage storage, Executor executor, int slices, BufferPool buffers, RetryPolicy retryPolicy,
+                     CircuitBreaker circuitBreaker) {
+        this.storage = storage;
+        this.executor = executor;
+        this.slices = Math.max(1, slices);
+        this.buffers = buffers;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    // Reads byte ranges of the blob concurrently, each written straight into its offset of the preallocated file.
+    // Returns the CRC32C of the downloaded content, combined from the CRC32C each slice computes while reading.
+    long download(Blob blob, Path destination, TransferProgress progress) throws IOException {
+        final long size = blob.getSize();
+        final long sliceSize = Math.max(1, (size + this.slices - 1) / this.slices);
+        // Pin the generation so that every slice reads the same version of the object
+        final BlobId blobId = BlobId.of(blob.getBucket(), blob.getName(), blob.getGeneration());
+
+        try (RandomAccessFile file = new RandomAccessFile(destination.toFile(), "rw")) {
+            file.setLength(size);
+            final FileChannel channel = file.getChannel();
+
+            final List<CompletableFuture<Void>> reads = new ArrayList<>(this.slices);
+            final List<CRC32C> checksums = new ArrayList<>(this.slices);
+            final List<Long> lengths = new ArrayList<>(this.slices);
+            for (long offset = 0; offset < size; offset += sliceSize) {
+                final long sliceOffset = offset;
+                final long sliceLength = Math.min(sliceSize, size - offset);
+                final CRC32C checksum = new CRC32C();
+                checksums.add(checksum);
+                lengths.add(sliceLength);
+                reads.add(CompletableFuture.runAsync(() -> downloadSlice(blobId, channel, sliceOffset, sliceLength,
+                        Checksums.crc32c(checksum, progress)), this.executor));
+            }
+            CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).join();
+
+            // Starting from the CRC32C of no content
+            long crc32c = 0;
+            for (int i = 0; i < checksums.size(); i++) {
+                crc32c = Checksums.combineCrc32c(crc32c, checksums.get(i).getValue(), lengths.get(i));
+            }
+            return crc32c;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            } else if (e.getCause() instanceof StorageException) {
+                throw (StorageException) e.getCause();
+            }
+            throw new IOException(String.format("Failed to download slices of %s", blob.getName()), e.getCause());
+        }
+    }
+
+    private void downloadSlice(BlobId blobId, FileChannel channel, long offset, long length, TransferProgress progress) {
+        final ByteBuffer buffer = this.buffers.acquire();
+        // A failed read continues the slice from the last byte written
+        final long[] position = {offset};
+        try {
+            this.retryPolicy.call(this.circuitBreaker, () -> {
+                readSlice(blobId, channel, position, offset + length, buffer, progress);
+                return null;
+            });
+        } finally {
+            this.buffers.release(buffer);
+        }
+    }
+
+    private void readSlice(BlobId blobId, FileChannel channel, long[] position, long end, ByteBuffer buffer,
+                           TransferProgress progress) {
+        try (ReadChannel reader = this.storage.reader(blobId)) {
+            reader.seek(position[0]);
+            while (position[0] < end) {
+                // The reader fetches max(remaining, chunk size) per request, capping both at the slice boundary
+                // avoids downloading bytes that belong to the next slice
+                reader.setChunkSize((int) Math.min(READ_CHUNK_SIZE, end - position[0]));
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position[0]));
+                final int read = reader.read(buffer);
+                if (read < 0) {
+                    throw new EOFException(String.format("%s ended at %d, expected %d bytes", blobId.getName(),
+                            position[0], end));
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    position[0] += channel.write(buffer, position[0]);
+                }
+                buffer.rewind();
+                progress.update(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
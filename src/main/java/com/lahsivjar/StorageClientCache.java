@@ -0,0 +1,111 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.Storage;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Maven creates a wagon per repository and often per request, sharing the clients across wagons saves building the
+// client, loading credentials and the TLS handshakes every time. Clients are reference counted and shut down once
+// no wagon has used them for the idle timeout.
+final class StorageClientCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageClientCache.class);
+
+    static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000;
+
+    private static final StorageClientCache INSTANCE = new StorageClientCache(PooledStorageClient::create,
+            DEFAULT_IDLE_TIMEOUT_MILLIS);
+
+    private final Function<StorageClientSettings, PooledStorageClient> clientFactory;
+    private final long idleTimeoutMillis;
+    private final Map<StorageClientSettings, Entry> entries = new HashMap<>();
+    private ScheduledThreadPoolExecutor scheduler;
+
+    StorageClientCache(Function<StorageClientSettings, PooledStorageClient> clientFactory, long idleTimeoutMillis) {
+        this.clientFactory = clientFactory;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    static StorageClientCache getInstance() {
+        return INSTANCE;
+    }
+
+    synchronized Storage acquire(StorageClientSettings settings) {
+        Entry entry = this.entries.get(settings);
+        if (entry == null) {
+            LOGGER.debug("Creating storage client for {}", settings);
+            entry = new Entry(this.clientFactory.apply(settings));
+            this.entries.put(settings, entry);
+        } else if (entry.pendingClose != null) {
+            entry.pendingClose.cancel(false);
+            entry.pendingClose = null;
+        }
+        entry.references++;
+        return entry.client.getStorage();
+    }
+
+    synchronized void release(StorageClientSettings settings) {
+        final Entry entry = this.entries.get(settings);
+        if (entry == null || entry.references == 0) {
+            return;
+        }
+        entry.references--;
+        if (entry.references > 0) {
+            return;
+        }
+        if (this.idleTimeoutMillis <= 0) {
+            close(settings, entry);
+        } else {
+            entry.pendingClose = getScheduler().schedule(() -> closeIfIdle(settings, entry),
+                    this.idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized int size() {
+        return this.entries.size();
+    }
+
+    private synchronized void closeIfIdle(StorageClientSettings settings, Entry entry) {
+        // The client may have been acquired again, or replaced, since the close was scheduled
+        if (entry.references == 0 && this.entries.get(settings) == entry) {
+            close(settings, entry);
+        }
+    }
+
+    private void close(StorageClientSettings settings, Entry entry) {
+        LOGGER.debug("Shutting down idle storage client for {}", settings);
+        this.entries.remove(settings);
+        entry.client.close();
+    }
+
+    private ScheduledThreadPoolExecutor getScheduler() {
+        if (this.scheduler == null) {
+            // Daemon so that pending shutdowns never keep the build from exiting
+            this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                    .setNameFormat("gcp-storage-wagon-client-cache")
+                    .setDaemon(true)
+                    .build());
+            this.scheduler.setRemoveOnCancelPolicy(true);
+        }
+        return this.scheduler;
+    }
+
+    private static final class Entry {
+
+        private final PooledStorageClient client;
+        private int references;
+        private ScheduledFuture<?> pendingClose;
+
+        private Entry(PooledStorageClient client) {
+            this.client = client;
+        }
+    }
+}
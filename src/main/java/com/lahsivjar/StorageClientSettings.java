@@ -0,0 +1,106 @@
+package com.lahsivjar;
+
+import org.apache.maven.wagon.proxy.ProxyInfo;
+
+import java.util.Objects;
+
+// Everything a storage client is built from, wagons with equal settings share the same client
+final class StorageClientSettings {
+
+    private final String projectId;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int maxConnections;
+    private final long keepAliveMillis;
+    private final String proxyHost;
+    private final int proxyPort;
+    private final String proxyUserName;
+    private final String proxyPassword;
+
+    StorageClientSettings(String projectId, int connectTimeout, int readTimeout, int maxConnections,
+                          long keepAliveMillis, ProxyInfo proxyInfo) {
+        this.projectId = projectId;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.maxConnections = maxConnections;
+        this.keepAliveMillis = keepAliveMillis;
+        this.proxyHost = proxyInfo == null ? null : proxyInfo.getHost();
+        this.proxyPort = proxyInfo == null ? -1 : proxyInfo.getPort();
+        this.proxyUserName = proxyInfo == null ? null : proxyInfo.getUserName();
+        this.proxyPassword = proxyInfo == null ? null : proxyInfo.getPassword();
+    }
+
+    String getProjectId() {
+        return this.projectId;
+    }
+
+    int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    int getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    long getKeepAliveMillis() {
+        return this.keepAliveMillis;
+    }
+
+    boolean hasProxy() {
+        return this.proxyHost != null;
+    }
+
+    String getProxyHost() {
+        return this.proxyHost;
+    }
+
+    int getProxyPort() {
+        return this.proxyPort;
+    }
+
+    String getProxyUserName() {
+        return this.proxyUserName;
+    }
+
+    String getProxyPassword() {
+        return this.proxyPassword;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final StorageClientSettings that = (StorageClientSettings) o;
+        return this.connectTimeout == that.connectTimeout
+                && this.readTimeout == that.readTimeout
+                && this.maxConnections == that.maxConnections
+                && this.keepAliveMillis == that.keepAliveMillis
+                && this.proxyPort == that.proxyPort
+                && Objects.equals(this.projectId, that.projectId)
+                && Objects.equals(this.proxyHost, that.proxyHost)
+                && Objects.equals(this.proxyUserName, that.proxyUserName)
+                && Objects.equals(this.proxyPassword, that.proxyPassword);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.projectId, this.connectTimeout, this.readTimeout, this.maxConnections,
+                this.keepAliveMillis, this.proxyHost, this.proxyPort, this.proxyUserName, this.proxyPassword);
+    }
+
+    @Override
+    public String toString() {
+        // Leaves out the proxy credentials
+        return String.format("project %s, timeouts %d/%d ms, %d connections, keep alive %d ms, proxy %s",
+                this.projectId, this.connectTimeout, this.readTimeout, this.maxConnections, this.keepAliveMillis,
+                hasProxy() ? this.proxyHost + ":" + this.proxyPort : "none");
+    }
+}
@@ -0,0 +1,89 @@
+package com.lahsivjar;
+
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.WagonException;
+import org.apache.maven.wagon.authorization.AuthorizationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+final class TransferBatch {
+
+    interface Transfer {
+        void run() throws WagonException;
+    }
+
+    private final Executor executor;
+    private final int parallelism;
+    private final Semaphore permits;
+    private final Queue<WagonException> failures = new ConcurrentLinkedQueue<>();
+    private int submitted;
+
+    TransferBatch(Executor executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.permits = new Semaphore(this.parallelism);
+    }
+
+    // Blocks while the maximum number of transfers are in flight
+    void submit(Transfer transfer) throws InterruptedException {
+        this.permits.acquire();
+        this.submitted++;
+        try {
+            this.executor.execute(() -> {
+                try {
+                    transfer.run();
+                } catch (WagonException e) {
+                    this.failures.add(e);
+                } catch (RuntimeException e) {
+                    this.failures.add(new TransferFailedException(e.getMessage(), e));
+                } finally {
+                    this.permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.permits.release();
+            this.failures.add(new TransferFailedException("Transfer rejected by executor", e));
+        }
+    }
+
+    void await() throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+        this.permits.acquireUninterruptibly(this.parallelism);
+        this.permits.release(this.parallelism);
+
+        if (this.failures.isEmpty()) {
+            return;
+        }
+
+        final List<WagonException> allFailures = new ArrayList<>(this.failures);
+        if (allFailures.size() == 1) {
+            rethrow(allFailures.get(0));
+        }
+
+        final StringBuilder message = new StringBuilder(String.format("%d of %d transfers failed:",
+                allFailures.size(), this.submitted));
+        allFailures.forEach(f -> message.append(System.lineSeparator()).append(" - ").append(f.getMessage()));
+
+        final TransferFailedException aggregate = new TransferFailedException(message.toString(), allFailures.get(0));
+        allFailures.stream().skip(1).forEach(aggregate::addSuppressed);
+        throw aggregate;
+    }
+
+    private static void rethrow(WagonException e)
+            throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+        if (e instanceof TransferFailedException) {
+            throw (TransferFailedException) e;
+        } else if (e instanceof ResourceDoesNotExistException) {
+            throw (ResourceDoesNotExistException) e;
+        } else if (e instanceof AuthorizationException) {
+            throw (AuthorizationException) e;
+        }
+        throw new TransferFailedException(e.getMessage(), e);
+    }
+}
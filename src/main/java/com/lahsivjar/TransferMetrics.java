@@ -0,0 +1,224 @@
+package com.lahsivjar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts, bytes and latencies of the wagon operations on a bucket. The metrics of a bucket are shared by all wagons of
+// the process and registered over JMX, so that a whole build can be inspected while it runs.
+final class TransferMetrics implements TransferMetricsMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransferMetrics.class);
+
+    private static final String DOMAIN = "com.lahsivjar";
+    private static final ConcurrentMap<String, TransferMetrics> BUCKETS = new ConcurrentHashMap<>();
+
+    enum Operation {
+        CONNECT("connect"),
+        GET("get"),
+        GET_IF_NEWER("getIfNewer"),
+        PUT("put"),
+        RESOURCE_EXISTS("resourceExists"),
+        GET_FILE_LIST("getFileList");
+
+        private final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+    }
+
+    enum Outcome {
+        SUCCESS("success"),
+        NOT_FOUND("notFound"),
+        FAILURE("failure");
+
+        private final String key;
+
+        Outcome(String key) {
+            this.key = key;
+        }
+    }
+
+    private final Map<Operation, Statistics> operations = new EnumMap<>(Operation.class);
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder metadataLookups = new LongAdder();
+    private final LongAdder metadataCacheMisses = new LongAdder();
+    private final LongAdder downloadCacheHits = new LongAdder();
+    private final LongAdder downloadCacheMisses = new LongAdder();
+
+    TransferMetrics() {
+        for (Operation operation : Operation.values()) {
+            this.operations.put(operation, new Statistics());
+        }
+    }
+
+    static TransferMetrics forBucket(String bucket) {
+        return BUCKETS.computeIfAbsent(bucket, TransferMetrics::register);
+    }
+
+    private static TransferMetrics register(String bucket) {
+        final TransferMetrics metrics = new TransferMetrics();
+        try {
+            final ObjectName name = new ObjectName(DOMAIN + ":type=TransferMetrics,bucket=" + ObjectName.quote(bucket));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+        } catch (JMException e) {
+            // The metrics are still recorded and summarized, only not visible over JMX
+            LOGGER.warn("Failed to register the transfer metrics of {} over JMX", bucket, e);
+        }
+        return metrics;
+    }
+
+    // Bytes only count for successful operations
+    void record(Operation operation, Outcome outcome, long startNanos, long bytes) {
+        final Statistics statistics = this.operations.get(operation);
+        final long elapsed = System.nanoTime() - startNanos;
+        statistics.outcomes.get(outcome).increment();
+        statistics.latency.record(TimeUnit.NANOSECONDS.toMicros(elapsed));
+        if (outcome == Outcome.SUCCESS && bytes > 0) {
+            statistics.bytes.add(bytes);
+            statistics.transferNanos.add(elapsed);
+        }
+    }
+
+    void onRetry() {
+        this.retries.increment();
+    }
+
+    void onMetadataLookups(int lookups) {
+        this.metadataLookups.add(lookups);
+    }
+
+    void onMetadataCacheMisses(int misses) {
+        this.metadataCacheMisses.add(misses);
+    }
+
+    void onDownloadCacheLookup(boolean hit) {
+        (hit ? this.downloadCacheHits : this.downloadCacheMisses).increment();
+    }
+
+    long count(Operation operation, Outcome outcome) {
+        return this.operations.get(operation).outcomes.get(outcome).sum();
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        this.operations.forEach((operation, statistics) -> statistics.outcomes.forEach(
+                (outcome, count) -> counts.put(operation.key + "." + outcome.key, count.sum())));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getBytes() {
+        final Map<String, Long> bytes = new TreeMap<>();
+        this.operations.forEach((operation, statistics) -> bytes.put(operation.key, statistics.bytes.sum()));
+        return bytes;
+    }
+
+    @Override
+    public Map<String, Double> getThroughput() {
+        final Map<String, Double> throughput = new TreeMap<>();
+        this.operations.forEach((operation, statistics) -> throughput.put(operation.key, statistics.throughput()));
+        return throughput;
+    }
+
+    @Override
+    public Map<String, Double> getLatencies() {
+        final Map<String, Double> latencies = new TreeMap<>();
+        this.operations.forEach((operation, statistics) -> {
+            final LatencyHistogram latency = statistics.latency;
+            latencies.put(operation.key + ".p50", millis(latency.percentile(50)));
+            latencies.put(operation.key + ".p90", millis(latency.percentile(90)));
+            latencies.put(operation.key + ".p99", millis(latency.percentile(99)));
+            latencies.put(operation.key + ".max", millis(latency.max()));
+        });
+        return latencies;
+    }
+
+    @Override
+    public long getRetries() {
+        return this.retries.sum();
+    }
+
+    @Override
+    public long getMetadataCacheHits() {
+        return Math.max(0, this.metadataLookups.sum() - this.metadataCacheMisses.sum());
+    }
+
+    @Override
+    public long getMetadataCacheMisses() {
+        return this.metadataCacheMisses.sum();
+    }
+
+    @Override
+    public long getDownloadCacheHits() {
+        return this.downloadCacheHits.sum();
+    }
+
+    @Override
+    public long getDownloadCacheMisses() {
+        return this.downloadCacheMisses.sum();
+    }
+
+    // One line per operation that happened at all, followed by retries and cache hit rates
+    @Override
+    public String getSummary() {
+        final StringJoiner summary = new StringJoiner(System.lineSeparator());
+        this.operations.forEach((operation, statistics) -> {
+            final LatencyHistogram latency = statistics.latency;
+            if (latency.count() == 0) {
+                return;
+            }
+            final StringBuilder line = new StringBuilder(String.format(Locale.ROOT,
+                    "%s: %d succeeded, %d not found, %d failed, p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                    operation.key, statistics.outcomes.get(Outcome.SUCCESS).sum(),
+                    statistics.outcomes.get(Outcome.NOT_FOUND).sum(), statistics.outcomes.get(Outcome.FAILURE).sum(),
+                    millis(latency.percentile(50)), millis(latency.percentile(99)), millis(latency.max())));
+            if (statistics.bytes.sum() > 0) {
+                line.append(String.format(Locale.ROOT, ", %d bytes at %.1f KB/s", statistics.bytes.sum(),
+                        statistics.throughput() / 1024));
+            }
+            summary.add(line);
+        });
+        summary.add(String.format(Locale.ROOT, "%d retries, metadata cache %d hits %d misses, "
+                        + "download cache %d hits %d misses", getRetries(), getMetadataCacheHits(),
+                getMetadataCacheMisses(), getDownloadCacheHits(), getDownloadCacheMisses()));
+        return summary.toString();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class Statistics {
+
+        private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder transferNanos = new LongAdder();
+
+        private Statistics() {
+            for (Outcome outcome : Outcome.values()) {
+                this.outcomes.put(outcome, new LongAdder());
+            }
+        }
+
+        private double throughput() {
+            final long nanos = this.transferNanos.sum();
+            return nanos > 0 ? this.bytes.sum() * 1e9 / nanos : 0;
+        }
+    }
+}
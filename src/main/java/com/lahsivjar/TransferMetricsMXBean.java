@@ -0,0 +1,30 @@
+package com.lahsivjar;
+
+import java.util.Map;
+
+// Attributes of the transfer metrics registered over JMX. Keys combine the operation and the outcome or statistic,
+// such as get.success or put.p99.
+public interface TransferMetricsMXBean {
+
+    Map<String, Long> getCounts();
+
+    Map<String, Long> getBytes();
+
+    // Bytes per second of the successful transfers of every operation that moves content
+    Map<String, Double> getThroughput();
+
+    // 50th, 90th and 99th percentile and maximum latency of every operation in milliseconds
+    Map<String, Double> getLatencies();
+
+    long getRetries();
+
+    long getMetadataCacheHits();
+
+    long getMetadataCacheMisses();
+
+    long getDownloadCacheHits();
+
+    long getDownloadCacheMisses();
+
+    String getSummary();
+}
@@ -0,0 +1,8 @@
+package com.lahsivjar;
+
+import java.nio.ByteBuffer;
+
+interface TransferProgress {
+    // The transferred bytes are the remaining bytes of the buffer, implementations must not move its position
+    void update(ByteBuffer data);
+}
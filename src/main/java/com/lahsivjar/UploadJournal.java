@@ -0,0 +1,166 @@
+package com.lahsivjar;
+
+import com.google.cloud.RestorableState;
+import com.google.cloud.ServiceOptions;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.StorageOptions;
+import com.google.common.hash.Hashing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+// Persists the state of resumable upload sessions, so that a later put of the same file to the same blob continues
+// the session where it stopped, even from another process. Each upload has its own journal file, rewritten after
+// every chunk. The session may write to another object than the blob, such as a temporary one to be copied over the
+// blob once verified, so its name is part of the journal. The storage options in the captured state, which include
+// the credentials, are left out of the journal and replaced with the options of the current client on restore.
+final class UploadJournal {
+
+    private static final String SUFFIX = ".upload";
+
+    private final Path directory;
+    private final Supplier<StorageOptions> options;
+
+    UploadJournal(Path directory, Supplier<StorageOptions> options) {
+        this.directory = directory;
+        this.options = options;
+    }
+
+    // Returns the session of an earlier upload of the same source content, or null if there is none to continue
+    Session find(BlobInfo blobInfo, File source, String crc32c) throws IOException {
+        final Path file = journalFile(blobInfo, source);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        final long size;
+        final long lastModified;
+        final String recordedCrc32c;
+        final Session session;
+        try (JournalInputStream input = new JournalInputStream(Files.newInputStream(file), this.options.get())) {
+            size = input.readLong();
+            lastModified = input.readLong();
+            recordedCrc32c = (String) input.readObject();
+            final String blobName = (String) input.readObject();
+            final long offset = input.readLong();
+            @SuppressWarnings("unchecked")
+            final RestorableState<WriteChannel> state = (RestorableState<WriteChannel>) input.readObject();
+            session = new Session(blobName, offset, state);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException(String.format("Failed to read upload journal %s", file), e);
+        }
+
+        // A matching checksum proves the content is the same, otherwise the modification time has to do
+        final boolean sameContent = size == source.length()
+                && (crc32c != null && recordedCrc32c != null
+                        ? crc32c.equals(recordedCrc32c)
+                        : lastModified == source.lastModified());
+        if (!sameContent) {
+            remove(blobInfo, source);
+            return null;
+        }
+        return session;
+    }
+
+    // Must be called with the state captured after offset bytes of the source were written to the channel, which
+    // writes to the object of the given name in the bucket of the blob
+    void record(BlobInfo blobInfo, File source, String crc32c, String blobName, long offset,
+                RestorableState<WriteChannel> state) throws IOException {
+        Files.createDirectories(this.directory);
+        final Path file = journalFile(blobInfo, source);
+        final Path temporary = Files.createTempFile(this.directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (JournalOutputStream output = new JournalOutputStream(Files.newOutputStream(temporary))) {
+                output.writeLong(source.length());
+                output.writeLong(source.lastModified());
+                output.writeObject(crc32c);
+                output.writeObject(blobName);
+                output.writeLong(offset);
+                output.writeObject(state);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    void remove(BlobInfo blobInfo, File source) throws IOException {
+        Files.deleteIfExists(journalFile(blobInfo, source));
+    }
+
+    private Path journalFile(BlobInfo blobInfo, File source) {
+        final String key = blobInfo.getBucket() + "/" + blobInfo.getName() + " " + source.getAbsolutePath();
+        return this.directory.resolve(Hashing.sha256().hashString(key, StandardCharsets.UTF_8) + SUFFIX);
+    }
+
+    static final class Session {
+
+        private final String blobName;
+        private final long offset;
+        private final RestorableState<WriteChannel> state;
+
+        private Session(String blobName, long offset, RestorableState<WriteChannel> state) {
+            this.blobName = blobName;
+            this.offset = offset;
+            this.state = state;
+        }
+
+        // Name of the object the session writes to
+        String getBlobName() {
+            return this.blobName;
+        }
+
+        // Bytes of the source already written to the session
+        long getOffset() {
+            return this.offset;
+        }
+
+        WriteChannel restore() {
+            return this.state.restore();
+        }
+    }
+
+    // Stands in for the service options in the journal
+    private enum Placeholder {
+        SERVICE_OPTIONS
+    }
+
+    private static final class JournalOutputStream extends ObjectOutputStream {
+
+        private JournalOutputStream(OutputStream output) throws IOException {
+            super(output);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            return obj instanceof ServiceOptions ? Placeholder.SERVICE_OPTIONS : obj;
+        }
+    }
+
+    private static final class JournalInputStream extends ObjectInputStream {
+
+        private final StorageOptions options;
+
+        private JournalInputStream(InputStream input, StorageOptions options) throws IOException {
+            super(input);
+            this.options = Objects.requireNonNull(options);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) {
+            return obj == Placeholder.SERVICE_OPTIONS ? this.options : obj;
+        }
+    }
+}
@@ -174,6 +174,35 @@ public class AbstractWagonTest {
         Assert.assertFalse(spyTransferEventSupport.hasTransferListener(mockTransferListener));
     }
 
+    @Test
+    public void testHasTransferListeners() {
+        final TransferListener mockTransferListener = Mockito.mock(TransferListener.class);
+        Assert.assertFalse(this.stubWagon.hasTransferListeners());
+        this.stubWagon.addTransferListener(mockTransferListener);
+        Assert.assertTrue(this.stubWagon.hasTransferListeners());
+        this.stubWagon.removeTransferListener(mockTransferListener);
+        this.stubWagon.removeTransferListener(mockTransferListener);
+        Assert.assertFalse(this.stubWagon.hasTransferListeners());
+    }
+
+    @Test
+    public void testHasTransferListenersFollowsEventSupport() {
+        final TransferListener mockTransferListener = Mockito.mock(TransferListener.class);
+        this.stubWagon.addTransferListener(null);
+        Assert.assertFalse(this.stubWagon.hasTransferListeners());
+        this.stubWagon.removeTransferListener(null);
+        Assert.assertFalse(this.stubWagon.hasTransferListeners());
+
+        // A listener added twice is notified twice until removed twice
+        this.stubWagon.addTransferListener(mockTransferListener);
+        this.stubWagon.addTransferListener(mockTransferListener);
+        this.stubWagon.removeTransferListener(mockTransferListener);
+        Assert.assertTrue(spyTransferEventSupport.hasTransferListener(mockTransferListener));
+        Assert.assertTrue(this.stubWagon.hasTransferListeners());
+        this.stubWagon.removeTransferListener(mockTransferListener);
+        Assert.assertFalse(this.stubWagon.hasTransferListeners());
+    }
+
     @Test
     public void testHasTransferListener() {
         final TransferListener mockTransferListener = Mockito.mock(TransferListener.class);
@@ -0,0 +1,89 @@
+package com.lahsivjar;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class AsyncTransfersTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testResultAndFailure() throws Exception {
+        final AsyncTransfers transfers = new AsyncTransfers(executor, 2);
+
+        Assert.assertEquals("done", transfers.submit(() -> "done").get(10, TimeUnit.SECONDS));
+        try {
+            transfers.submit(() -> {
+                throw new ResourceDoesNotExistException("missing.jar does not exist");
+            }).get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the failure of the transfer");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ResourceDoesNotExistException);
+        }
+    }
+
+    @Test
+    public void testSubmitBlocksWhileTransfersAreInFlight() throws Exception {
+        final AsyncTransfers transfers = new AsyncTransfers(executor, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        transfers.submit(() -> Uninterruptibles.awaitUninterruptibly(release, 10, TimeUnit.SECONDS));
+
+        final AtomicBoolean submitted = new AtomicBoolean();
+        final CompletableFuture<Void> submitter = CompletableFuture.runAsync(() -> {
+            transfers.submit(() -> "second").join();
+            submitted.set(true);
+        }, executor);
+        Thread.sleep(200);
+        Assert.assertFalse(submitted.get());
+
+        release.countDown();
+        submitter.get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(submitted.get());
+    }
+
+    @Test
+    public void testCancelInterruptsRunningTransfer() throws Exception {
+        final AsyncTransfers transfers = new AsyncTransfers(executor, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final CompletableFuture<Object> future = transfers.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        try {
+            future.join();
+            Assert.fail("Expected the transfer to be cancelled");
+        } catch (CancellationException e) {
+            // Expected
+        }
+        // The permit of the cancelled transfer is released
+        Assert.assertEquals("next", transfers.submit(() -> "next").get(10, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageBatch;
+import com.google.cloud.storage.StorageBatchResult;
+import com.google.cloud.storage.StorageException;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// LocalStorageHelper's fake rpc does not support batches, this emulates batched gets with a get per blob when the
+// batch is submitted. The returned storage is a mock so that batch() calls can be verified.
+final class BatchingStorage {
+
+    private BatchingStorage() {
+
+    }
+
+    static Storage wrap(Storage storage) {
+        final Storage batching = Mockito.mock(Storage.class, AdditionalAnswers.delegatesTo(storage));
+        Mockito.doAnswer(invocation -> newBatch(batching)).when(batching).batch();
+        return batching;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StorageBatch newBatch(Storage storage) {
+        final List<BlobId> blobIds = new ArrayList<>();
+        final List<StorageBatchResult<Blob>> results = new ArrayList<>();
+        final List<Object> outcomes = new ArrayList<>();
+        return Mockito.mock(StorageBatch.class, invocation -> {
+            switch (invocation.getMethod().getName()) {
+                case "get":
+                    final int index = blobIds.size();
+                    blobIds.add(invocation.getArgument(0));
+                    final StorageBatchResult<Blob> result = Mockito.mock(StorageBatchResult.class, get -> {
+                        final Object outcome = outcomes.get(index);
+                        if (outcome instanceof StorageException) {
+                            throw (StorageException) outcome;
+                        }
+                        return outcome;
+                    });
+                    results.add(result);
+                    return result;
+                case "submit":
+                    for (BlobId blobId : blobIds) {
+                        try {
+                            outcomes.add(storage.get(blobId));
+                        } catch (StorageException e) {
+                            outcomes.add(e);
+                        }
+                    }
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(invocation.getMethod().getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BlobMetadataBatcherTest {
+
+    private static final String BUCKET = "fake-dummy-bucket";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Storage storageWith(String... names) {
+        final Storage storage = BatchingStorage.wrap(SynchronizedStorage.wrap(LocalStorageHelper.getOptions().getService()));
+        for (String name : names) {
+            storage.create(BlobInfo.newBuilder(BUCKET, name).build(), new byte[]{1});
+        }
+        return storage;
+    }
+
+    @Test
+    public void testWithoutWindowLooksUpDirectly() {
+        final Storage storage = storageWith("a");
+        final BlobMetadataBatcher batcher = new BlobMetadataBatcher(() -> storage, 100, 0);
+
+        Assert.assertNotNull(batcher.get(BlobId.of(BUCKET, "a")));
+        Assert.assertNull(batcher.get(BlobId.of(BUCKET, "b")));
+        Mockito.verify(storage, Mockito.never()).batch();
+    }
+
+    @Test
+    public void testConcurrentLookupsShareBatch() throws Exception {
+        final Storage storage = storageWith("a", "b", "c");
+        final BlobMetadataBatcher batcher = new BlobMetadataBatcher(() -> storage, 100, 200);
+
+        final List<Future<Blob>> lookups = new ArrayList<>();
+        for (String name : Arrays.asList("a", "b", "c", "missing")) {
+            lookups.add(executor.submit(() -> batcher.get(BlobId.of(BUCKET, name))));
+        }
+
+        Assert.assertEquals("a", lookups.get(0).get().getName());
+        Assert.assertEquals("b", lookups.get(1).get().getName());
+        Assert.assertEquals("c", lookups.get(2).get().getName());
+        Assert.assertNull(lookups.get(3).get());
+        Mockito.verify(storage, Mockito.times(1)).batch();
+    }
+
+    @Test
+    public void testFullBatchIsSentBeforeWindowEnds() throws Exception {
+        final Storage storage = storageWith("a", "b");
+        final BlobMetadataBatcher batcher = new BlobMetadataBatcher(() -> storage, 2, 60_000);
+
+        final Future<Blob> first = executor.submit(() -> batcher.get(BlobId.of(BUCKET, "a")));
+        final Blob second = batcher.get(BlobId.of(BUCKET, "b"));
+
+        Assert.assertEquals("b", second.getName());
+        Assert.assertEquals("a", first.get().getName());
+    }
+
+    @Test
+    public void testGetAllSplitsIntoBatches() {
+        final Storage storage = storageWith("a", "c", "e");
+        final BlobMetadataBatcher batcher = new BlobMetadataBatcher(() -> storage, 2, 0);
+
+        final List<Blob> blobs = batcher.getAll(Arrays.asList(BlobId.of(BUCKET, "a"), BlobId.of(BUCKET, "b"),
+                BlobId.of(BUCKET, "c"), BlobId.of(BUCKET, "d"), BlobId.of(BUCKET, "e")));
+
+        Assert.assertEquals(5, blobs.size());
+        Assert.assertEquals("a", blobs.get(0).getName());
+        Assert.assertNull(blobs.get(1));
+        Assert.assertEquals("c", blobs.get(2).getName());
+        Assert.assertNull(blobs.get(3));
+        Assert.assertEquals("e", blobs.get(4).getName());
+        Mockito.verify(storage, Mockito.times(3)).batch();
+    }
+
+    @Test(expected = StorageException.class)
+    public void testFailedLookupIsRethrown() {
+        final Storage storage = storageWith("a");
+        Mockito.doThrow(new StorageException(403, "Forbidden")).when(storage).get(BlobId.of(BUCKET, "a"));
+        final BlobMetadataBatcher batcher = new BlobMetadataBatcher(() -> storage, 100, 0);
+
+        batcher.getAll(Arrays.asList(BlobId.of(BUCKET, "a"), BlobId.of(BUCKET, "b")));
+    }
+
+}
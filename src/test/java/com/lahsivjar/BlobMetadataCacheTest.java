@@ -0,0 +1,109 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class BlobMetadataCacheTest {
+
+    private static final BlobId FIRST = BlobId.of("bucket", "first");
+    private static final BlobId SECOND = BlobId.of("bucket", "second");
+    private static final BlobId THIRD = BlobId.of("bucket", "third");
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Function<BlobId, Blob> loader(Blob blob) {
+        return id -> {
+            loads.incrementAndGet();
+            return blob;
+        };
+    }
+
+    @Test
+    public void testHit() {
+        final BlobMetadataCache cache = new BlobMetadataCache(10, 0);
+        final Blob blob = Mockito.mock(Blob.class);
+
+        Assert.assertSame(blob, cache.get(FIRST, loader(blob)));
+        Assert.assertSame(blob, cache.get(FIRST, loader(blob)));
+
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, cache.hits());
+        Assert.assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void testMissingBlobIsCached() {
+        final BlobMetadataCache cache = new BlobMetadataCache(10, 0);
+
+        Assert.assertNull(cache.get(FIRST, loader(null)));
+        Assert.assertNull(cache.get(FIRST, loader(null)));
+
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        final BlobMetadataCache cache = new BlobMetadataCache(2, 0);
+        cache.get(FIRST, loader(null));
+        cache.get(SECOND, loader(null));
+        cache.get(FIRST, loader(null));
+        cache.get(THIRD, loader(null));
+
+        Assert.assertEquals(2, cache.size());
+        cache.get(FIRST, loader(null));
+        Assert.assertEquals(3, loads.get());
+        cache.get(SECOND, loader(null));
+        Assert.assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testExpiredEntryIsReloaded() throws InterruptedException {
+        final BlobMetadataCache cache = new BlobMetadataCache(10, 20);
+        cache.get(FIRST, loader(null));
+        Thread.sleep(50);
+        cache.get(FIRST, loader(null));
+
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        final BlobMetadataCache cache = new BlobMetadataCache(10, 0);
+        cache.get(FIRST, loader(null));
+        cache.get(SECOND, loader(null));
+
+        cache.invalidate(FIRST);
+        Assert.assertEquals(1, cache.size());
+
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLoadRacingInvalidationIsNotCached() {
+        final BlobMetadataCache cache = new BlobMetadataCache(10, 0);
+        cache.get(FIRST, id -> {
+            cache.invalidate(id);
+            return null;
+        });
+
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        final BlobMetadataCache cache = new BlobMetadataCache(0, 0);
+        cache.get(FIRST, loader(null));
+        cache.get(FIRST, loader(null));
+
+        Assert.assertEquals(2, loads.get());
+        Assert.assertEquals(0, cache.size());
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.lahsivjar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testReleasedBuffersAreReused() {
+        final BufferPool pool = new BufferPool(1024, 2, true);
+        final ByteBuffer buffer = pool.acquire();
+        Assert.assertTrue(buffer.isDirect());
+        Assert.assertEquals(1024, buffer.capacity());
+
+        buffer.put((byte) 1);
+        pool.release(buffer);
+
+        final ByteBuffer reused = pool.acquire();
+        Assert.assertSame(buffer, reused);
+        Assert.assertEquals(0, reused.position());
+        Assert.assertEquals(1024, reused.limit());
+    }
+
+    @Test
+    public void testPoolIsBounded() {
+        final BufferPool pool = new BufferPool(16, 2, false);
+        final ByteBuffer first = pool.acquire();
+        final ByteBuffer second = pool.acquire();
+        final ByteBuffer third = pool.acquire();
+
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+
+        Assert.assertEquals(2, pool.pooled());
+    }
+
+    @Test
+    public void testForeignBuffersAreNotPooled() {
+        final BufferPool pool = new BufferPool(16, 2, true);
+        pool.release(ByteBuffer.allocate(16));
+        pool.release(ByteBuffer.allocateDirect(32));
+
+        Assert.assertEquals(0, pool.pooled());
+    }
+
+    @Test
+    public void testSharedPoolsAreKeyedBySizeAndKind() {
+        Assert.assertSame(BufferPool.shared(4096, 2, true), BufferPool.shared(4096, 4, true));
+        Assert.assertNotSame(BufferPool.shared(4096, 2, true), BufferPool.shared(4096, 2, false));
+        Assert.assertNotSame(BufferPool.shared(4096, 2, true), BufferPool.shared(8192, 2, true));
+        Assert.assertEquals(8192, BufferPool.shared(8192, 2, true).getBufferSize());
+    }
+
+}
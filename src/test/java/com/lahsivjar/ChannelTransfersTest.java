@@ -0,0 +1,93 @@
+package com.lahsivjar;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ChannelTransfersTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCopy() throws IOException {
+        final byte[] content = new byte[10 * 1024 + 7];
+        new java.util.Random(1).nextBytes(content);
+        final ByteArrayOutputStream target = new ByteArrayOutputStream();
+        final AtomicLong progress = new AtomicLong();
+
+        final long copied = ChannelTransfers.copy(Channels.newChannel(new ByteArrayInputStream(content)),
+                Channels.newChannel(target), ByteBuffer.allocateDirect(1024), data -> progress.addAndGet(data.remaining()));
+
+        Assert.assertEquals(content.length, copied);
+        Assert.assertEquals(content.length, progress.get());
+        Assert.assertArrayEquals(content, target.toByteArray());
+    }
+
+    @Test
+    public void testCopyWritesFullBuffersFromShortReads() throws IOException {
+        final byte[] content = new byte[4096];
+        final ReadableByteChannel trickle = new ReadableByteChannel() {
+            private int position = 0;
+
+            @Override
+            public int read(ByteBuffer dst) {
+                if (position == content.length) {
+                    return -1;
+                }
+                // Hands out at most 100 bytes per read
+                final int length = Math.min(100, Math.min(dst.remaining(), content.length - position));
+                dst.put(content, position, length);
+                position += length;
+                return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final List<Integer> updates = new ArrayList<>();
+
+        ChannelTransfers.copy(trickle, Channels.newChannel(new ByteArrayOutputStream()), ByteBuffer.allocate(1024),
+                data -> updates.add(data.remaining()));
+
+        Assert.assertEquals(4, updates.size());
+        updates.forEach(update -> Assert.assertEquals(1024, (int) update));
+    }
+
+    @Test
+    public void testCopyMapped() throws IOException {
+        final File source = CompositeUploaderTest.randomFile(folder.newFile("source"), 100 * 1024 + 3);
+        final ByteArrayOutputStream target = new ByteArrayOutputStream();
+        final AtomicLong progress = new AtomicLong();
+
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            final long copied = ChannelTransfers.copyMapped(channel, Channels.newChannel(target), 8 * 1024,
+                    data -> progress.addAndGet(data.remaining()));
+            Assert.assertEquals(source.length(), copied);
+        }
+
+        Assert.assertEquals(source.length(), progress.get());
+        Assert.assertArrayEquals(java.nio.file.Files.readAllBytes(source.toPath()), target.toByteArray());
+    }
+
+}
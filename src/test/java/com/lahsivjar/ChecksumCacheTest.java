@@ -0,0 +1,83 @@
+package com.lahsivjar;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ChecksumCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String expectedCrc32c(byte[] content) {
+        // Encoded the way the storage client does for small uploads
+        return BaseEncoding.base64().encode(Ints.toByteArray(Hashing.crc32c().hashBytes(content).asInt()));
+    }
+
+    @Test
+    public void testCrc32cMatchesBlobMetadataEncoding() throws IOException {
+        final File source = CompositeUploaderTest.randomFile(folder.newFile("artifact-1.0.jar"), 100_000);
+        final ChecksumCache cache = new ChecksumCache(folder.getRoot().toPath().resolve("checksums.properties"));
+
+        // A small buffer makes the hash span several reads
+        Assert.assertEquals(expectedCrc32c(Files.readAllBytes(source.toPath())),
+                cache.crc32c(source, ByteBuffer.allocate(4096)));
+    }
+
+    @Test
+    public void testUnchangedFileIsNotHashedAgain() throws IOException {
+        final Path checksumsFile = folder.getRoot().toPath().resolve("state").resolve("checksums.properties");
+        final File source = CompositeUploaderTest.randomFile(folder.newFile("artifact-1.0.jar"), 1000);
+        final ChecksumCache cache = ChecksumCache.load(checksumsFile);
+        final String crc32c = cache.crc32c(source, ByteBuffer.allocate(4096));
+        cache.save();
+
+        // Same size and modification time, the remembered hash is trusted without reading the file
+        final long lastModified = source.lastModified();
+        Files.write(source.toPath(), new byte[1000]);
+        Assert.assertTrue(source.setLastModified(lastModified));
+
+        final ChecksumCache reloaded = ChecksumCache.load(checksumsFile);
+        Assert.assertEquals(1, reloaded.size());
+        Assert.assertEquals(crc32c, reloaded.crc32c(source, ByteBuffer.allocate(4096)));
+    }
+
+    @Test
+    public void testChangedFileIsHashedAgain() throws IOException {
+        final File source = CompositeUploaderTest.randomFile(folder.newFile("artifact-1.0.jar"), 1000);
+        final ChecksumCache cache = new ChecksumCache(folder.getRoot().toPath().resolve("checksums.properties"));
+        cache.crc32c(source, ByteBuffer.allocate(4096));
+
+        final byte[] changed = new byte[1001];
+        Files.write(source.toPath(), changed);
+        Assert.assertEquals(expectedCrc32c(changed), cache.crc32c(source, ByteBuffer.allocate(4096)));
+    }
+
+    @Test
+    public void testMalformedRecordsAreSkippedOnLoad() throws IOException {
+        final Path checksumsFile = folder.getRoot().toPath().resolve("checksums.properties");
+        final File source = CompositeUploaderTest.randomFile(folder.newFile("artifact-1.0.jar"), 1000);
+        final String record = source.length() + " " + source.lastModified() + " not-a-crc32c "
+                + source.getAbsolutePath();
+        Files.write(checksumsFile, ("artifact=" + record.replace("\\", "\\\\") + "\n")
+                .getBytes(StandardCharsets.ISO_8859_1), StandardOpenOption.CREATE);
+
+        final ChecksumCache cache = ChecksumCache.load(checksumsFile);
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(expectedCrc32c(Files.readAllBytes(source.toPath())),
+                cache.crc32c(source, ByteBuffer.allocate(4096)));
+    }
+
+}
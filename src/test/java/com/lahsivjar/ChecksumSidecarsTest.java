@@ -0,0 +1,47 @@
+package com.lahsivjar;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class ChecksumSidecarsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAlgorithm() {
+        Assert.assertEquals("sha1", ChecksumSidecars.algorithm("com/lahsivjar/artifact-1.0.jar.sha1"));
+        Assert.assertEquals("md5", ChecksumSidecars.algorithm("com/lahsivjar/artifact-1.0.POM.MD5"));
+        Assert.assertEquals("sha512", ChecksumSidecars.algorithm("artifact-1.0.jar.sha512"));
+        Assert.assertNull(ChecksumSidecars.algorithm("com/lahsivjar/artifact-1.0.jar"));
+        Assert.assertNull(ChecksumSidecars.algorithm("com/lahsivjar/artifact-1.0.jar.asc"));
+        Assert.assertNull(ChecksumSidecars.algorithm(".sha1"));
+    }
+
+    @Test
+    public void testDescribed() {
+        Assert.assertEquals("com/lahsivjar/artifact-1.0.jar",
+                ChecksumSidecars.described("com/lahsivjar/artifact-1.0.jar.sha256", "sha256"));
+    }
+
+    @Test
+    public void testReadOnlyKeepsSmallAsciiContent() throws IOException {
+        final File digest = folder.newFile("artifact-1.0.jar.sha1");
+        Files.write(digest.toPath(), "2fd4e1c67a2d28fced849ee1bb76e7391b93eb12  artifact-1.0.jar\n".getBytes());
+        Assert.assertEquals("2fd4e1c67a2d28fced849ee1bb76e7391b93eb12  artifact-1.0.jar\n", ChecksumSidecars.read(digest));
+
+        final File binary = folder.newFile("binary.md5");
+        Files.write(binary.toPath(), new byte[]{(byte) 0xff, 0x01});
+        Assert.assertNull(ChecksumSidecars.read(binary));
+
+        final File large = folder.newFile("large.sha512");
+        Files.write(large.toPath(), new byte[4096]);
+        Assert.assertNull(ChecksumSidecars.read(large));
+    }
+}
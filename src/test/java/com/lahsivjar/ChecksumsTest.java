@@ -0,0 +1,63 @@
+package com.lahsivjar;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+public class ChecksumsTest {
+
+    private static byte[] randomContent(int size) {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    private static long crc32c(byte[] content, int offset, int length) {
+        final CRC32C crc32c = new CRC32C();
+        crc32c.update(content, offset, length);
+        return crc32c.getValue();
+    }
+
+    @Test
+    public void testCrc32cOfChannelMatchesBlobMetadataEncoding() throws IOException {
+        final byte[] content = randomContent(10_000);
+
+        // Encoded the way the storage client does for small uploads
+        Assert.assertEquals(BaseEncoding.base64().encode(Ints.toByteArray(Hashing.crc32c().hashBytes(content).asInt())),
+                Checksums.crc32c(Channels.newChannel(new ByteArrayInputStream(content)), ByteBuffer.allocate(999)));
+    }
+
+    @Test
+    public void testCrc32cProgressHashesWithoutConsumingData() {
+        final byte[] content = randomContent(1000);
+        final CRC32C crc32c = new CRC32C();
+        final ByteBuffer data = ByteBuffer.wrap(content);
+
+        Checksums.crc32c(crc32c, update -> Assert.assertEquals(content.length, update.remaining())).update(data);
+
+        Assert.assertEquals(0, data.position());
+        Assert.assertEquals(crc32c(content, 0, content.length), crc32c.getValue());
+    }
+
+    @Test
+    public void testCombineCrc32c() {
+        final byte[] content = randomContent(100_000);
+        final long whole = crc32c(content, 0, content.length);
+
+        for (int split : new int[]{0, 1, 4096, 65_537, content.length - 1, content.length}) {
+            final long combined = Checksums.combineCrc32c(crc32c(content, 0, split),
+                    crc32c(content, split, content.length - split), content.length - split);
+            Assert.assertEquals("Split at " + split, whole, combined);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.StorageException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private static void assertRejected(CircuitBreaker breaker) {
+        try {
+            breaker.acquire();
+            Assert.fail("Expected the open circuit breaker to reject the call");
+        } catch (StorageException e) {
+            Assert.assertTrue(CircuitBreaker.isRejection(e));
+            Assert.assertEquals(503, e.getCode());
+        }
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveRetryableFailures() {
+        final CircuitBreaker breaker = new CircuitBreaker("bucket", 3, 1000, clock::get);
+
+        breaker.onFailure(true);
+        breaker.onFailure(true);
+        breaker.onSuccess();
+        breaker.onFailure(true);
+        breaker.onFailure(true);
+        // Missing objects say nothing about the bucket
+        breaker.onFailure(false);
+        Assert.assertFalse(breaker.isOpen());
+
+        breaker.onFailure(true);
+        Assert.assertTrue(breaker.isOpen());
+        assertRejected(breaker);
+    }
+
+    @Test
+    public void testSingleTrialAfterOpenTime() {
+        final CircuitBreaker breaker = new CircuitBreaker("bucket", 1, 1000, clock::get);
+        breaker.onFailure(true);
+
+        clock.addAndGet(1000);
+        breaker.acquire();
+        // Only one call probes the bucket
+        assertRejected(breaker);
+
+        breaker.onFailure(true);
+        assertRejected(breaker);
+
+        clock.addAndGet(1000);
+        breaker.acquire();
+        breaker.onSuccess();
+        Assert.assertFalse(breaker.isOpen());
+        breaker.acquire();
+    }
+
+    @Test
+    public void testOpenBreakerStopsRetries() {
+        final CircuitBreaker breaker = new CircuitBreaker("bucket", 2, 1000, clock::get);
+        final RetryPolicy policy = new RetryPolicy(5, 0, 0, 0, clock::get, millis -> {
+        }, () -> {
+        });
+        final AtomicInteger calls = new AtomicInteger();
+
+        try {
+            policy.call(breaker, () -> {
+                calls.incrementAndGet();
+                throw new StorageException(503, "Service unavailable");
+            });
+            Assert.fail("Expected the open circuit breaker to fail the call");
+        } catch (StorageException e) {
+            Assert.assertTrue(CircuitBreaker.isRejection(e));
+            Assert.assertEquals(2, calls.get());
+        }
+    }
+
+}
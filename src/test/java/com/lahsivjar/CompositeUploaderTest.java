@@ -0,0 +1,183 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.StreamSupport;
+
+public class CompositeUploaderTest {
+
+    private static final String BUCKET = "fake-dummy-bucket";
+
+    @Rule
+    public TemporaryFolder sourceFolder = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final RetryPolicy retryPolicy = new RetryPolicy(3, 100, 1000, 0, () -> 0L, millis -> {
+    }, () -> {
+    });
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // LocalStorageHelper does not implement compose so emulate it by concatenating the source objects
+    static Storage composingStorage() {
+        return composingStorage(SynchronizedStorage.wrap(LocalStorageHelper.getOptions().getService()));
+    }
+
+    static Storage composingStorage(Storage delegate) {
+        final Storage storage = Mockito.mock(Storage.class, AdditionalAnswers.delegatesTo(delegate));
+        Mockito.doAnswer(invocation -> {
+            final Storage.ComposeRequest request = invocation.getArgument(0);
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            for (Storage.ComposeRequest.SourceBlob source : request.getSourceBlobs()) {
+                content.write(delegate.readAllBytes(BlobId.of(request.getTarget().getBucket(), source.getName())));
+            }
+            return delegate.create(request.getTarget(), content.toByteArray());
+        }).when(storage).compose(Mockito.any(Storage.ComposeRequest.class));
+        return storage;
+    }
+
+    static File randomFile(File file, int size) throws IOException {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private static long countBlobs(Storage storage) {
+        return StreamSupport.stream(storage.list(BUCKET).iterateAll().spliterator(), false).count();
+    }
+
+    @Test
+    public void testUpload() throws IOException {
+        final Storage storage = composingStorage();
+        final File source = randomFile(sourceFolder.newFile("large.tar.gz"), 3 * 1024 * 1024 + 17);
+        final AtomicLong progress = new AtomicLong();
+
+        final CompositeUploader uploader = new CompositeUploader(storage, executor, 4, new BufferPool(4096, 4, true), retryPolicy, null);
+        final Blob blob = uploader.upload(source.toPath(), BlobInfo.newBuilder(BUCKET, "large.tar.gz").build(),
+                data -> progress.addAndGet(data.remaining()));
+
+        Assert.assertNotNull(blob);
+        Assert.assertArrayEquals(Files.readAllBytes(source.toPath()),
+                storage.readAllBytes(BlobId.of(BUCKET, "large.tar.gz")));
+        Assert.assertEquals(source.length(), progress.get());
+        Mockito.verify(storage, Mockito.times(4)).writer(Mockito.<BlobInfo>argThat(
+                info -> info != null && info.getName().startsWith(CompositeUploader.PARTS_PREFIX)));
+        // The parts and the composed object are removed once copied over the target
+        Mockito.verify(storage, Mockito.times(5)).delete(Mockito.any(BlobId.class));
+        Mockito.verify(storage).copy(Mockito.any(Storage.CopyRequest.class));
+        Assert.assertEquals(1, countBlobs(storage));
+    }
+
+    @Test
+    public void testPartFailureCleansUpParts() throws IOException {
+        final Storage storage = composingStorage();
+        Mockito.doThrow(new StorageException(503, "Service unavailable"))
+                .when(storage).writer(Mockito.<BlobInfo>argThat(info -> info != null && info.getName().endsWith(".part-2")));
+        final File source = randomFile(sourceFolder.newFile("large.tar.gz"), 1024 * 1024);
+
+        final CompositeUploader uploader = new CompositeUploader(storage, executor, 4, new BufferPool(4096, 4, true), retryPolicy, null);
+        try {
+            uploader.upload(source.toPath(), BlobInfo.newBuilder(BUCKET, "large.tar.gz").build(),
+                    data -> {
+                    });
+            Assert.fail("Expected the failed part to fail the upload");
+        } catch (StorageException e) {
+            Assert.assertEquals(503, e.getCode());
+        }
+
+        Mockito.verify(storage, Mockito.never()).compose(Mockito.any(Storage.ComposeRequest.class));
+        Assert.assertEquals(0, countBlobs(storage));
+    }
+
+    @Test
+    public void testTransientPartFailureIsRetried() throws IOException {
+        final Storage delegate = SynchronizedStorage.wrap(LocalStorageHelper.getOptions().getService());
+        final Storage storage = composingStorage(delegate);
+        final AtomicInteger failures = new AtomicInteger();
+        Mockito.doAnswer(invocation -> {
+            if (failures.getAndIncrement() == 0) {
+                throw new StorageException(503, "Service unavailable");
+            }
+            return delegate.writer(invocation.<BlobInfo>getArgument(0));
+        }).when(storage).writer(Mockito.<BlobInfo>argThat(info -> info != null && info.getName().endsWith(".part-2")));
+        final File source = randomFile(sourceFolder.newFile("large.tar.gz"), 1024 * 1024);
+
+        final CompositeUploader uploader = new CompositeUploader(storage, executor, 4, new BufferPool(4096, 4, true),
+                retryPolicy, null);
+        uploader.upload(source.toPath(), BlobInfo.newBuilder(BUCKET, "large.tar.gz").build(), data -> {
+        });
+
+        Assert.assertEquals(2, failures.get());
+        Assert.assertArrayEquals(Files.readAllBytes(source.toPath()),
+                storage.readAllBytes(BlobId.of(BUCKET, "large.tar.gz")));
+    }
+
+    @Test
+    public void testCorruptedComposeDoesNotReplaceTarget() throws IOException {
+        final Storage delegate = SynchronizedStorage.wrap(LocalStorageHelper.getOptions().getService());
+        final Storage storage = Mockito.mock(Storage.class, AdditionalAnswers.delegatesTo(delegate));
+        Mockito.doAnswer(invocation -> {
+            final Storage.ComposeRequest request = invocation.getArgument(0);
+            return delegate.create(request.getTarget(), new byte[]{1, 2, 3});
+        }).when(storage).compose(Mockito.any(Storage.ComposeRequest.class));
+        final byte[] released = {4, 5, 6};
+        storage.create(BlobInfo.newBuilder(BUCKET, "large.tar.gz").build(), released);
+        final File source = randomFile(sourceFolder.newFile("large.tar.gz"), 64 * 1024);
+
+        final CompositeUploader uploader = new CompositeUploader(storage, executor, 4, new BufferPool(1024, 4, true),
+                retryPolicy, null);
+        try {
+            uploader.upload(source.toPath(), BlobInfo.newBuilder(BUCKET, "large.tar.gz").build(), data -> {
+            });
+            Assert.fail("Expected the checksum mismatch to fail the upload");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("CRC32C"));
+        }
+
+        // The existing version is left alone, only the temporary objects are removed
+        Mockito.verify(storage, Mockito.never()).copy(Mockito.any(Storage.CopyRequest.class));
+        Assert.assertArrayEquals(released, storage.readAllBytes(BlobId.of(BUCKET, "large.tar.gz")));
+        Assert.assertEquals(1, countBlobs(storage));
+    }
+
+    @Test
+    public void testPartsAreCappedByComposeLimit() throws IOException {
+        final Storage storage = composingStorage();
+        final File source = randomFile(sourceFolder.newFile("large.tar.gz"), 64 * 1024);
+
+        final CompositeUploader uploader = new CompositeUploader(storage, executor, 100, new BufferPool(1024, 4, true), retryPolicy, null);
+        uploader.upload(source.toPath(), BlobInfo.newBuilder(BUCKET, "large.tar.gz").build(), data -> {
+        });
+
+        Mockito.verify(storage, Mockito.times(CompositeUploader.MAX_COMPOSE_SOURCES + 1))
+                .delete(Mockito.any(BlobId.class));
+        Assert.assertArrayEquals(Files.readAllBytes(source.toPath()),
+                storage.readAllBytes(BlobId.of(BUCKET, "large.tar.gz")));
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.BlobId;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+public class DownloadCacheTest {
+
+    private static final BlobId BLOB_ID = BlobId.of("bucket", "com/lahsivjar/artifact-1.0.jar");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path downloaded(String name, int size) throws IOException {
+        final Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, new byte[size]);
+        return file;
+    }
+
+    private static boolean fetch(DownloadCache cache, BlobId blobId, long generation, long size, Path destination)
+            throws IOException {
+        return cache.fetch(blobId, generation, size, destination, ByteBuffer.allocate(4), data -> {
+        });
+    }
+
+    @Test
+    public void testFetchServesStoredGeneration() throws IOException {
+        final DownloadCache cache = new DownloadCache(folder.getRoot().toPath().resolve("cache"), 1024);
+        final Path destination = folder.getRoot().toPath().resolve("destination.jar");
+
+        Assert.assertFalse(fetch(cache, BLOB_ID, 1L, 10, destination));
+        cache.store(BLOB_ID, 1L, downloaded("artifact-1.0.jar", 10));
+
+        Assert.assertTrue(fetch(cache, BLOB_ID, 1L, 10, destination));
+        Assert.assertEquals(10, Files.size(destination));
+        // Another generation of the same blob is a different entry
+        Assert.assertFalse(fetch(cache, BLOB_ID, 2L, 10, destination));
+        // The hit counts once the caller verified the content
+        Assert.assertEquals(0, cache.hits());
+        cache.recordHit();
+        Assert.assertEquals(1, cache.hits());
+        Assert.assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void testRemovedEntryIsMiss() throws IOException {
+        final DownloadCache cache = new DownloadCache(folder.getRoot().toPath().resolve("cache"), 1024);
+        final Path destination = folder.getRoot().toPath().resolve("destination.jar");
+        cache.store(BLOB_ID, 1L, downloaded("artifact-1.0.jar", 10));
+
+        Assert.assertTrue(fetch(cache, BLOB_ID, 1L, 10, destination));
+        cache.remove(BLOB_ID, 1L);
+
+        Assert.assertEquals(0, cache.hits());
+        Assert.assertEquals(1, cache.misses());
+        Assert.assertFalse(fetch(cache, BLOB_ID, 1L, 10, destination));
+    }
+
+    @Test
+    public void testEntryOfUnexpectedSizeIsMiss() throws IOException {
+        final DownloadCache cache = new DownloadCache(folder.getRoot().toPath().resolve("cache"), 1024);
+        cache.store(BLOB_ID, 1L, downloaded("artifact-1.0.jar", 10));
+
+        Assert.assertFalse(fetch(cache, BLOB_ID, 1L, 11, folder.getRoot().toPath().resolve("destination.jar")));
+        Assert.assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        final Path root = folder.getRoot().toPath().resolve("cache");
+        final DownloadCache cache = new DownloadCache(root, 25);
+        final Path destination = folder.getRoot().toPath().resolve("destination.jar");
+        final BlobId first = BlobId.of("bucket", "first.jar");
+        final BlobId second = BlobId.of("bucket", "second.jar");
+        final BlobId third = BlobId.of("bucket", "third.jar");
+
+        cache.store(first, 1L, downloaded("first.jar", 10));
+        cache.store(second, 1L, downloaded("second.jar", 10));
+        backdate(root);
+        // Using the first entry makes the second one the least recently used
+        Assert.assertTrue(fetch(cache, first, 1L, 10, destination));
+        cache.store(third, 1L, downloaded("third.jar", 10));
+
+        Assert.assertEquals(20, cache.size());
+        Assert.assertTrue(fetch(cache, first, 1L, 10, destination));
+        Assert.assertFalse(fetch(cache, second, 1L, 10, destination));
+        Assert.assertTrue(fetch(cache, third, 1L, 10, destination));
+    }
+
+    @Test
+    public void testCacheIsSharedThroughDirectory() throws IOException {
+        final Path root = folder.getRoot().toPath().resolve("cache");
+        new DownloadCache(root, 1024).store(BLOB_ID, 1L, downloaded("artifact-1.0.jar", 10));
+
+        Assert.assertTrue(fetch(new DownloadCache(root, 1024), BLOB_ID, 1L, 10,
+                folder.getRoot().toPath().resolve("destination.jar")));
+    }
+
+    private static void backdate(Path root) throws IOException {
+        // Modification times may have a coarse resolution, move every entry well into the past
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+            }
+        }
+    }
+
+    @Test
+    public void testFetchReportsProgress() throws IOException {
+        final DownloadCache cache = new DownloadCache(folder.getRoot().toPath().resolve("cache"), 1024 * 1024);
+        cache.store(BLOB_ID, 1L, downloaded("artifact-1.0.jar", 10_000));
+        final AtomicLong progress = new AtomicLong();
+
+        Assert.assertTrue(cache.fetch(BLOB_ID, 1L, 10_000, folder.getRoot().toPath().resolve("destination.jar"),
+                ByteBuffer.allocate(4096), data -> progress.addAndGet(data.remaining())));
+        Assert.assertEquals(10_000, progress.get());
+    }
+
+    @Test
+    public void testTotalSizeIsKeptWithoutWalkingEntries() throws IOException {
+        final Path root = folder.getRoot().toPath().resolve("cache");
+        final DownloadCache cache = new DownloadCache(root, 1024);
+        cache.store(BlobId.of("bucket", "first.jar"), 1L, downloaded("first.jar", 10));
+        cache.store(BlobId.of("bucket", "second.jar"), 1L, downloaded("second.jar", 20));
+        // Storing the same generation again replaces the entry
+        cache.store(BlobId.of("bucket", "second.jar"), 1L, downloaded("second.jar", 20));
+        Assert.assertEquals("30", new String(Files.readAllBytes(root.resolve("cache.size")), StandardCharsets.US_ASCII));
+
+        cache.remove(BlobId.of("bucket", "first.jar"), 1L);
+        Assert.assertEquals("20", new String(Files.readAllBytes(root.resolve("cache.size")), StandardCharsets.US_ASCII));
+        Assert.assertFalse(fetch(cache, BlobId.of("bucket", "first.jar"), 1L, 10, root.resolve("destination.jar")));
+    }
+
+    @Test
+    public void testUnknownTotalSizeIsRecomputed() throws IOException {
+        final Path root = folder.getRoot().toPath().resolve("cache");
+        final DownloadCache cache = new DownloadCache(root, 1024);
+        cache.store(BlobId.of("bucket", "first.jar"), 1L, downloaded("first.jar", 10));
+        Files.write(root.resolve("cache.size"), "garbage".getBytes(StandardCharsets.US_ASCII));
+
+        cache.store(BlobId.of("bucket", "second.jar"), 1L, downloaded("second.jar", 20));
+        Assert.assertEquals("30", new String(Files.readAllBytes(root.resolve("cache.size")), StandardCharsets.US_ASCII));
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.lahsivjar;
+
+import org.apache.maven.wagon.repository.Repository;
+
+import java.util.Optional;
+
+// Registered through ServiceLoader in the test resources, resolves a single made up host
+public final class FixedGcpResourceIdProvider implements GcpResourceIdProvider {
+
+    static final String HOST = "fixed-repository";
+    static final String PROJECT_ID = "fixed-project-id";
+    static final String BUCKET = "fixed-bucket";
+
+    @Override
+    public Optional<GcpResourceId> get(Repository repository) {
+        if (HOST.equals(repository.getHost())) {
+            return Optional.of(new GcpResourceId(PROJECT_ID, BUCKET));
+        }
+        return Optional.empty();
+    }
+}
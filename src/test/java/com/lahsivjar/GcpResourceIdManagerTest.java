@@ -14,9 +14,11 @@ public class GcpResourceIdManagerTest {
     @Test
     public void testPriorityOrder() {
         final ImmutableList<GcpResourceIdProvider> providers = resourceIdManager.getProviders();
-        Assert.assertEquals(2, providers.size());
+        Assert.assertEquals(3, providers.size());
         Assert.assertTrue(providers.get(0) instanceof HashSeparatedGcpResourceIdProvider);
-        Assert.assertTrue(providers.get(1) instanceof EnvVariableBasedGcpResourceIdProvider);
+        // Registered in the test resources through ServiceLoader
+        Assert.assertTrue(providers.get(1) instanceof FixedGcpResourceIdProvider);
+        Assert.assertTrue(providers.get(2) instanceof EnvVariableBasedGcpResourceIdProvider);
     }
 
     @Test(expected = NoProjectIdFoundException.class)
@@ -54,4 +56,36 @@ public class GcpResourceIdManagerTest {
         Assert.assertEquals("test-bucket", gcpResourceId.getBucket());
     }
 
+    @Test
+    public void testProjectIdResolvedViaRegisteredProvider() throws NoProjectIdFoundException, NoBucketFoundException {
+        final Repository mockRepository = Mockito.mock(Repository.class);
+        Mockito.when(mockRepository.getHost()).thenReturn(FixedGcpResourceIdProvider.HOST);
+
+        final GcpResourceId gcpResourceId = resourceIdManager.get(mockRepository);
+        Assert.assertEquals(FixedGcpResourceIdProvider.PROJECT_ID, gcpResourceId.getProjectId());
+        Assert.assertEquals(FixedGcpResourceIdProvider.BUCKET, gcpResourceId.getBucket());
+    }
+
+    @Test
+    public void testResolvedIdIsMemoizedPerUrl() throws NoProjectIdFoundException, NoBucketFoundException {
+        final Repository mockRepository = Mockito.mock(Repository.class);
+        Mockito.when(mockRepository.getUrl()).thenReturn("gs://memoized-project#memoized-bucket/releases");
+        Mockito.when(mockRepository.getHost()).thenReturn("memoized-project#memoized-bucket");
+        final HashSeparatedGcpResourceIdProvider spyProvider = Mockito.spy(new HashSeparatedGcpResourceIdProvider());
+        final GcpResourceIdManager spyResourceIdManager = Mockito.spy(resourceIdManager);
+        Mockito.when(spyResourceIdManager.getProviders()).thenReturn(ImmutableList.of(spyProvider));
+
+        try {
+            final GcpResourceId first = spyResourceIdManager.get(mockRepository);
+            Assert.assertSame(first, spyResourceIdManager.get(mockRepository));
+            Mockito.verify(spyProvider, Mockito.times(1)).get(mockRepository);
+
+            spyResourceIdManager.invalidate(mockRepository);
+            Assert.assertEquals("memoized-bucket", spyResourceIdManager.get(mockRepository).getBucket());
+            Mockito.verify(spyProvider, Mockito.times(2)).get(mockRepository);
+        } finally {
+            resourceIdManager.invalidate(mockRepository);
+        }
+    }
+
 }
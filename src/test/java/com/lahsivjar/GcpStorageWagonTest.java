@@ -1,29 +1,54 @@
 package com.lahsivjar;
 
+import com.google.api.gax.paging.Page;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.RestorableState;
+import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
 import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
 import com.google.common.io.Files;
+import com.google.common.primitives.Ints;
 import org.apache.maven.wagon.ConnectionException;
 import org.apache.maven.wagon.ResourceDoesNotExistException;
 import org.apache.maven.wagon.TransferFailedException;
 import org.apache.maven.wagon.authentication.AuthenticationException;
 import org.apache.maven.wagon.authorization.AuthorizationException;
+import org.apache.maven.wagon.events.TransferEvent;
+import org.apache.maven.wagon.events.TransferListener;
+import org.apache.maven.wagon.proxy.ProxyInfo;
 import org.apache.maven.wagon.repository.Repository;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.AdditionalAnswers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class GcpStorageWagonTest {
 
@@ -77,6 +102,98 @@ public class GcpStorageWagonTest {
         storageWagon.put(sourceFile, destinationPath);
     }
 
+    @Test
+    public void testStorageClientSettingsUseProxy() throws ConnectionException, AuthenticationException {
+        final ProxyInfo proxyInfo = new ProxyInfo();
+        proxyInfo.setType("http");
+        proxyInfo.setHost("proxy.example.com");
+        proxyInfo.setPort(3128);
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(fakeStorage());
+        storageWagon.connect(fakeRepository(), proxyInfo);
+
+        final StorageClientSettings settings = storageWagon.buildStorageClientSettings();
+        Assert.assertTrue(settings.hasProxy());
+        Assert.assertEquals("proxy.example.com", settings.getProxyHost());
+        Assert.assertEquals(3128, settings.getProxyPort());
+        Assert.assertEquals(DUMMY_PROJECT_ID, settings.getProjectId());
+    }
+
+    @Test
+    public void testStorageClientSettingsHonourNonProxyHosts() throws ConnectionException, AuthenticationException {
+        final ProxyInfo proxyInfo = new ProxyInfo();
+        proxyInfo.setType("http");
+        proxyInfo.setHost("proxy.example.com");
+        proxyInfo.setPort(3128);
+        proxyInfo.setNonProxyHosts("*.googleapis.com");
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(fakeStorage());
+        storageWagon.connect(fakeRepository(), proxyInfo);
+
+        Assert.assertFalse(storageWagon.buildStorageClientSettings().hasProxy());
+    }
+
+    @Test
+    public void testStorageClientIsSharedAcrossWagons() throws ConnectionException, AuthenticationException {
+        final GcpStorageWagon first = new GcpStorageWagon();
+        final GcpStorageWagon second = new GcpStorageWagon();
+        first.connect(fakeRepository());
+        second.connect(fakeRepository());
+
+        Assert.assertSame(first.getStorage(), second.getStorage());
+        first.disconnect();
+        second.disconnect();
+    }
+
+    @Test
+    public void testStorageClientIsCreatedOnFirstUse() throws ConnectionException, AuthenticationException {
+        final GcpStorageWagon storageWagon = new GcpStorageWagon();
+        storageWagon.connect(fakeRepository());
+
+        Assert.assertFalse(storageWagon.hasStorage());
+        Assert.assertNotNull(storageWagon.getStorage());
+        Assert.assertTrue(storageWagon.hasStorage());
+        storageWagon.disconnect();
+        Assert.assertFalse(storageWagon.hasStorage());
+    }
+
+    @Test
+    public void testStorageClientIsNotLeasedAfterDisconnect() throws ConnectionException, AuthenticationException {
+        final GcpStorageWagon storageWagon = new GcpStorageWagon();
+        storageWagon.connect(fakeRepository());
+        storageWagon.disconnect();
+
+        try {
+            storageWagon.getStorage();
+            Assert.fail("Expected the disconnected wagon to refuse leasing a client");
+        } catch (IllegalStateException e) {
+            Assert.assertFalse(storageWagon.hasStorage());
+        }
+    }
+
+    @Test
+    public void testWarmUpIsCancelledOnDisconnect() throws ConnectionException, AuthenticationException,
+            InterruptedException {
+        final Storage storage = Mockito.mock(Storage.class);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        }).when(storage).get(Mockito.any(BlobId.class), Mockito.<Storage.BlobGetOption>any());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        storageWagon.setWarmUpConnection(true);
+        storageWagon.connect(fakeRepository());
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        storageWagon.disconnect();
+
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
     @Test
     public void testProjectIdResolution() throws ConnectionException, AuthenticationException {
         final GcpStorageWagon storageWagon = new GcpStorageWagon();
@@ -176,6 +293,70 @@ public class GcpStorageWagonTest {
         Assert.assertTrue(blob.exists());
     }
 
+    @Test
+    public void testPutCompositeUpload() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage storage = CompositeUploaderTest.composingStorage();
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        storageWagon.setCompositeUploadThreshold(1024 * 1024);
+        storageWagon.setCompositeUploadParts(4);
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 2 * 1024 * 1024);
+
+        storageWagon.connect(fakeRepository());
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+
+        Mockito.verify(storage).compose(Mockito.any(Storage.ComposeRequest.class));
+        Assert.assertArrayEquals(java.nio.file.Files.readAllBytes(sourceFile.toPath()),
+                storage.readAllBytes(BlobId.of(DUMMY_BUCKET, DUMMY_BASE_DIR + DUMMY_FILE_NAME)));
+    }
+
+    @Test
+    public void testPutCompositeUploadFallback() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage storage = CompositeUploaderTest.composingStorage();
+        Mockito.doThrow(new StorageException(400, "Compose not allowed"))
+                .when(storage).compose(Mockito.any(Storage.ComposeRequest.class));
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        storageWagon.setCompositeUploadThreshold(1024 * 1024);
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 2 * 1024 * 1024);
+        final TransferListener listener = Mockito.mock(TransferListener.class);
+        final long[] progress = new long[1];
+        Mockito.doAnswer(invocation -> progress[0] += (int) invocation.getArgument(2))
+                .when(listener).transferProgress(Mockito.any(TransferEvent.class), Mockito.any(byte[].class), Mockito.anyInt());
+        storageWagon.addTransferListener(listener);
+
+        storageWagon.connect(fakeRepository());
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+
+        Assert.assertArrayEquals(java.nio.file.Files.readAllBytes(sourceFile.toPath()),
+                storage.readAllBytes(BlobId.of(DUMMY_BUCKET, DUMMY_BASE_DIR + DUMMY_FILE_NAME)));
+        Assert.assertEquals(1, storageWagon.getFileList("").size());
+        // The parts were reported before compose failed, the fallback upload must not report them again
+        Assert.assertEquals(sourceFile.length(), progress[0]);
+    }
+
+    @Test
+    public void testPutMemoryMapped() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage storage = fakeStorage();
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        storageWagon.setMemoryMappedUploads(true);
+        storageWagon.setBufferSize(256 * 1024);
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 3 * 1024 * 1024 + 5);
+        final TransferListener listener = Mockito.mock(TransferListener.class);
+        final long[] progress = new long[1];
+        Mockito.doAnswer(invocation -> progress[0] += (int) invocation.getArgument(2))
+                .when(listener).transferProgress(Mockito.any(TransferEvent.class), Mockito.any(byte[].class), Mockito.anyInt());
+        storageWagon.addTransferListener(listener);
+
+        storageWagon.connect(fakeRepository());
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+
+        Assert.assertEquals(sourceFile.length(), progress[0]);
+        Assert.assertArrayEquals(java.nio.file.Files.readAllBytes(sourceFile.toPath()),
+                storage.readAllBytes(BlobId.of(DUMMY_BUCKET, DUMMY_BASE_DIR + DUMMY_FILE_NAME)));
+    }
+
     @Test(expected = ResourceDoesNotExistException.class)
     public void testPutNoResource() throws IOException, ConnectionException, AuthenticationException,
             AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
@@ -198,6 +379,26 @@ public class GcpStorageWagonTest {
         Assert.assertTrue(localDestinationFile.exists());
     }
 
+    @Test
+    public void testGetSliced() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage storage = SynchronizedStorage.wrap(fakeStorage());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        storageWagon.setSlicedDownloadThreshold(1024 * 1024);
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 3 * 1024 * 1024);
+        storageWagon.connect(fakeRepository());
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+
+        final TransferListener listener = Mockito.mock(TransferListener.class);
+        storageWagon.addTransferListener(listener);
+        final File localDestinationFile = new File(m2EmulatedFolder.getRoot().getPath() + "/" + DUMMY_FILE_NAME);
+        storageWagon.get(DUMMY_FILE_NAME, localDestinationFile);
+
+        Assert.assertArrayEquals(java.nio.file.Files.readAllBytes(sourceFile.toPath()),
+                java.nio.file.Files.readAllBytes(localDestinationFile.toPath()));
+        Mockito.verify(listener).transferCompleted(Mockito.any(TransferEvent.class));
+    }
+
     @Test(expected = ResourceDoesNotExistException.class)
     public void testGetNoResource() throws IOException, ConnectionException, AuthenticationException,
             AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
@@ -209,6 +410,60 @@ public class GcpStorageWagonTest {
         storageWagon.get(DUMMY_FILE_NAME, localDestinationFile);
     }
 
+    @Test
+    public void testTransfersAreRecordedInBucketMetrics() throws IOException, ConnectionException,
+            AuthenticationException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final TransferMetrics metrics = TransferMetrics.forBucket(DUMMY_BUCKET);
+        final long puts = metrics.count(TransferMetrics.Operation.PUT, TransferMetrics.Outcome.SUCCESS);
+        final long gets = metrics.count(TransferMetrics.Operation.GET, TransferMetrics.Outcome.SUCCESS);
+        final long missing = metrics.count(TransferMetrics.Operation.GET, TransferMetrics.Outcome.NOT_FOUND);
+        final long bytes = metrics.getBytes().get("get");
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(fakeStorage());
+        storageWagon.connect(fakeRepository());
+        final File sourceFile = sourceFolder.newFile(DUMMY_FILE_NAME);
+        writeContentToFile(sourceFile);
+
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+        storageWagon.get(DUMMY_FILE_NAME, new File(m2EmulatedFolder.getRoot(), DUMMY_FILE_NAME));
+        try {
+            storageWagon.get("missing.txt", new File(m2EmulatedFolder.getRoot(), "missing.txt"));
+            Assert.fail("Expected the resource to be missing");
+        } catch (ResourceDoesNotExistException e) {
+            // Expected
+        }
+        storageWagon.disconnect();
+
+        Assert.assertEquals(puts + 1, metrics.count(TransferMetrics.Operation.PUT, TransferMetrics.Outcome.SUCCESS));
+        Assert.assertEquals(gets + 1, metrics.count(TransferMetrics.Operation.GET, TransferMetrics.Outcome.SUCCESS));
+        Assert.assertEquals(missing + 1,
+                metrics.count(TransferMetrics.Operation.GET, TransferMetrics.Outcome.NOT_FOUND));
+        Assert.assertEquals(bytes + sourceFile.length(), (long) metrics.getBytes().get("get"));
+    }
+
+    @Test
+    public void testAsyncTransfers() throws IOException, ConnectionException, AuthenticationException,
+            InterruptedException, ExecutionException, TimeoutException {
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(fakeStorage());
+        storageWagon.connect(fakeRepository());
+        final File sourceFile = sourceFolder.newFile(DUMMY_FILE_NAME);
+        writeContentToFile(sourceFile);
+        final File localDestinationFile = new File(m2EmulatedFolder.getRoot(), DUMMY_FILE_NAME);
+
+        storageWagon.putAsync(sourceFile, DUMMY_FILE_NAME).get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(storageWagon.existsAsync(DUMMY_FILE_NAME).get(10, TimeUnit.SECONDS));
+        storageWagon.getAsync(DUMMY_FILE_NAME, localDestinationFile).get(10, TimeUnit.SECONDS);
+        Assert.assertArrayEquals(Files.toByteArray(sourceFile), Files.toByteArray(localDestinationFile));
+
+        try {
+            storageWagon.getAsync("missing.txt", new File(m2EmulatedFolder.getRoot(), "missing.txt"))
+                    .get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the resource to be missing");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ResourceDoesNotExistException);
+        }
+        storageWagon.disconnect();
+    }
+
     @Test
     public void testGetIfNewerTrue() throws IOException, ConnectionException, AuthenticationException,
             AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
@@ -271,6 +526,691 @@ public class GcpStorageWagonTest {
 
     }
 
+    @Test
+    public void testMetadataIsFetchedOncePerResource() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        putFileUtil(storageWagon, DUMMY_FILE_NAME);
+        final File localDestinationFile = new File(m2EmulatedFolder.getRoot().getPath() + "/" + DUMMY_FILE_NAME);
+
+        Assert.assertTrue(storageWagon.resourceExists(DUMMY_FILE_NAME));
+        Assert.assertTrue(storageWagon.getIfNewer(DUMMY_FILE_NAME, localDestinationFile, 0L));
+        storageWagon.get(DUMMY_FILE_NAME, localDestinationFile);
+
+        Mockito.verify(spyStorage, Mockito.times(1)).get(Mockito.any(BlobId.class));
+    }
+
+    @Test
+    public void testPutInvalidatesCachedMetadata() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(fakeStorage());
+        storageWagon.connect(fakeRepository());
+        Assert.assertFalse(storageWagon.resourceExists(DUMMY_FILE_NAME));
+
+        storageWagon.put(sourceFolder.newFile(DUMMY_FILE_NAME), DUMMY_FILE_NAME);
+
+        Assert.assertTrue(storageWagon.resourceExists(DUMMY_FILE_NAME));
+    }
+
+    @Test
+    public void testGetRejectsCorruptedContent() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage storage = fakeStorage();
+        // The fake storage keeps whatever checksum the upload claims without checking it
+        final BlobInfo blobInfo = BlobInfo.newBuilder(DUMMY_BUCKET, DUMMY_BASE_DIR + DUMMY_FILE_NAME)
+                .setCrc32c("AAAAAA==")
+                .build();
+        try (WriteChannel writer = storage.writer(blobInfo, Storage.BlobWriteOption.crc32cMatch())) {
+            writer.write(ByteBuffer.wrap(DUMMY_FILE_CONTENT.getBytes()));
+        }
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        storageWagon.connect(fakeRepository());
+        final File localDestinationFile = new File(m2EmulatedFolder.getRoot(), DUMMY_FILE_NAME);
+
+        try {
+            storageWagon.get(DUMMY_FILE_NAME, localDestinationFile);
+            Assert.fail("Expected the checksum mismatch to fail the download");
+        } catch (TransferFailedException e) {
+            Assert.assertTrue(e.getMessage().contains("CRC32C"));
+        }
+        Assert.assertFalse(localDestinationFile.exists());
+
+        storageWagon.setVerifyChecksums(false);
+        storageWagon.get(DUMMY_FILE_NAME, localDestinationFile);
+        Assert.assertEquals(DUMMY_FILE_CONTENT, Files.asCharSource(localDestinationFile, StandardCharsets.UTF_8).read());
+    }
+
+    // Reads through the given reader until the limit, then fails like a dropped connection
+    private static ReadChannel failingAfter(ReadChannel reader, long limit) {
+        return new ReadChannel() {
+            private long read;
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                if (this.read >= limit) {
+                    throw new StorageException(0, "Connection reset");
+                }
+                final ByteBuffer limited = dst.duplicate();
+                limited.limit(limited.position() + (int) Math.min(limited.remaining(), limit - this.read));
+                final int count = reader.read(limited);
+                if (count > 0) {
+                    dst.position(dst.position() + count);
+                    this.read += count;
+                }
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return reader.isOpen();
+            }
+
+            @Override
+            public void close() {
+                reader.close();
+            }
+
+            @Override
+            public void seek(long position) throws IOException {
+                reader.seek(position);
+            }
+
+            @Override
+            public void setChunkSize(int chunkSize) {
+                reader.setChunkSize(chunkSize);
+            }
+
+            @Override
+            public RestorableState<ReadChannel> capture() {
+                return reader.capture();
+            }
+        };
+    }
+
+    @Test
+    public void testGetResumesAfterTransientFailure() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final TransferListener listener = Mockito.mock(TransferListener.class);
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.addTransferListener(listener);
+        storageWagon.setBufferSize(64 * 1024);
+        storageWagon.connect(fakeRepository());
+        // Resumable uploads of the fake storage assign generations, which larger files go through
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 1024 * 1024 + 1);
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+        Mockito.doAnswer(invocation -> failingAfter((ReadChannel) invocation.callRealMethod(), 300 * 1024))
+                .doCallRealMethod()
+                .when(spyStorage).reader(Mockito.any(BlobId.class));
+        final AtomicLong progress = new AtomicLong();
+        Mockito.doAnswer(invocation -> progress.addAndGet((int) invocation.getArgument(2)))
+                .when(listener).transferProgress(Mockito.any(TransferEvent.class), Mockito.any(byte[].class), Mockito.anyInt());
+        Mockito.clearInvocations(spyStorage);
+
+        final File localDestinationFile = new File(m2EmulatedFolder.getRoot(), DUMMY_FILE_NAME);
+        storageWagon.get(DUMMY_FILE_NAME, localDestinationFile);
+
+        Mockito.verify(spyStorage, Mockito.times(2)).reader(Mockito.any(BlobId.class));
+        Assert.assertArrayEquals(Files.toByteArray(sourceFile), Files.toByteArray(localDestinationFile));
+        // Bytes read before the failure are not read again
+        Assert.assertEquals(sourceFile.length(), progress.get());
+        Assert.assertArrayEquals(new String[]{DUMMY_FILE_NAME}, m2EmulatedFolder.getRoot().list());
+    }
+
+    @Test
+    public void testFailedGetKeepsDestination() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.connect(fakeRepository());
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 1024 * 1024 + 1);
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+        final File localDestinationFile = m2EmulatedFolder.newFile(DUMMY_FILE_NAME);
+        Files.write(new byte[]{1, 2, 3}, localDestinationFile);
+        Mockito.doThrow(new StorageException(403, "Forbidden")).when(spyStorage).reader(Mockito.any(BlobId.class));
+
+        try {
+            storageWagon.get(DUMMY_FILE_NAME, localDestinationFile);
+            Assert.fail("Expected the read failure to fail the download");
+        } catch (TransferFailedException e) {
+            Assert.assertEquals(403, ((StorageException) e.getCause()).getCode());
+        }
+
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, Files.toByteArray(localDestinationFile));
+        Assert.assertArrayEquals(new String[]{DUMMY_FILE_NAME}, m2EmulatedFolder.getRoot().list());
+    }
+
+    // Writes through the given writer until the limit, then fails like a dropped connection
+    private static WriteChannel failingAfter(WriteChannel writer, long limit) {
+        return new WriteChannel() {
+            private long written;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (this.written + src.remaining() > limit) {
+                    throw new StorageException(0, "Connection reset");
+                }
+                final int count = writer.write(src);
+                this.written += count;
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return writer.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+
+            @Override
+            public void setChunkSize(int chunkSize) {
+                writer.setChunkSize(chunkSize);
+            }
+
+            @Override
+            public RestorableState<WriteChannel> capture() {
+                return writer.capture();
+            }
+        };
+    }
+
+    @Test
+    public void testPutResumesInterruptedUpload() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage fakeStorage = fakeStorage();
+        final Storage storage = Mockito.mock(Storage.class, AdditionalAnswers.delegatesTo(fakeStorage));
+        final File stateDirectory = sourceFolder.newFolder("state");
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 3 * 1024 * 1024 + 1);
+        Mockito.doAnswer(invocation -> failingAfter(fakeStorage.writer(invocation.getArgument(0),
+                Arrays.copyOfRange(invocation.getArguments(), 1, invocation.getArguments().length,
+                        Storage.BlobWriteOption[].class)), 2 * 1024 * 1024))
+                .when(storage).writer(Mockito.any(BlobInfo.class), Mockito.any(Storage.BlobWriteOption.class));
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        storageWagon.setResumableUploads(true);
+        storageWagon.setStateDirectory(stateDirectory);
+        storageWagon.setBufferSize(1024 * 1024);
+        storageWagon.connect(fakeRepository());
+        try {
+            storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+            Assert.fail("Expected the interrupted upload to fail");
+        } catch (TransferFailedException e) {
+            Assert.assertEquals(0, ((StorageException) e.getCause()).getCode());
+        }
+        storageWagon.disconnect();
+
+        final TransferListener listener = Mockito.mock(TransferListener.class);
+        final AtomicLong progress = new AtomicLong();
+        Mockito.doAnswer(invocation -> progress.addAndGet((int) invocation.getArgument(2)))
+                .when(listener).transferProgress(Mockito.any(TransferEvent.class), Mockito.any(byte[].class), Mockito.anyInt());
+        final GcpStorageWagon nextWagon = new GcpStorageWagon(storage);
+        nextWagon.setResumableUploads(true);
+        nextWagon.setStateDirectory(stateDirectory);
+        nextWagon.addTransferListener(listener);
+        nextWagon.connect(fakeRepository());
+        Mockito.clearInvocations(storage);
+        nextWagon.put(sourceFile, DUMMY_FILE_NAME);
+
+        // The session of the first upload is continued after the two chunks it wrote
+        Mockito.verify(storage, Mockito.never()).writer(Mockito.any(BlobInfo.class), Mockito.any(Storage.BlobWriteOption.class));
+        Assert.assertEquals(sourceFile.length() - 2 * 1024 * 1024, progress.get());
+        Assert.assertArrayEquals(Files.toByteArray(sourceFile),
+                storage.readAllBytes(BlobId.of(DUMMY_BUCKET, DUMMY_BASE_DIR + DUMMY_FILE_NAME)));
+        Assert.assertArrayEquals(new String[0], new File(stateDirectory, GcpStorageWagon.UPLOADS_DIRECTORY).list());
+    }
+
+    @Test
+    public void testStreamUploadIsVerifiedInPlace() throws IOException, ConnectionException,
+            AuthenticationException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.connect(fakeRepository());
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 1024 * 1024 + 1);
+
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+
+        // Without staging nothing but the target is written, and nothing needs to be copied or deleted
+        final BlobId target = BlobId.of(DUMMY_BUCKET, DUMMY_BASE_DIR + DUMMY_FILE_NAME);
+        final ArgumentCaptor<BlobInfo> blobInfo = ArgumentCaptor.forClass(BlobInfo.class);
+        Mockito.verify(spyStorage).writer(blobInfo.capture());
+        Assert.assertEquals(target, blobInfo.getValue().getBlobId());
+        Mockito.verify(spyStorage).get(Mockito.eq(target), Mockito.<Storage.BlobGetOption>any());
+        Mockito.verify(spyStorage, Mockito.never()).copy(Mockito.any(Storage.CopyRequest.class));
+        Mockito.verify(spyStorage, Mockito.never()).delete(Mockito.any(BlobId.class));
+        Assert.assertArrayEquals(Files.toByteArray(sourceFile), spyStorage.readAllBytes(target));
+    }
+
+    @Test
+    public void testCorruptedStreamUploadIsReported() throws IOException, ConnectionException,
+            AuthenticationException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final BlobId target = BlobId.of(DUMMY_BUCKET, DUMMY_BASE_DIR + DUMMY_FILE_NAME);
+        // GCS reports another CRC32C for the committed upload
+        Mockito.doAnswer(invocation -> {
+            final Blob blob = (Blob) invocation.callRealMethod();
+            return blob != null && target.equals(invocation.getArgument(0))
+                    ? blob.toBuilder().setCrc32c("AAAAAA==").build()
+                    : blob;
+        }).when(spyStorage).get(Mockito.any(BlobId.class), Mockito.<Storage.BlobGetOption>any());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.connect(fakeRepository());
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 1024 * 1024 + 1);
+
+        try {
+            storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+            Assert.fail("Expected the corrupted upload to fail");
+        } catch (TransferFailedException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Failed to verify"));
+        }
+
+        Mockito.verify(spyStorage).delete(target);
+        Assert.assertNull(spyStorage.get(target));
+    }
+
+    @Test
+    public void testStagedStreamUploadIsCopiedOnceVerified() throws IOException, ConnectionException,
+            AuthenticationException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.setStagedUploads(true);
+        storageWagon.connect(fakeRepository());
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 1024 * 1024 + 1);
+
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+
+        final ArgumentCaptor<BlobInfo> blobInfo = ArgumentCaptor.forClass(BlobInfo.class);
+        Mockito.verify(spyStorage).writer(blobInfo.capture());
+        final BlobId temporary = blobInfo.getValue().getBlobId();
+        Assert.assertTrue(temporary.getName().startsWith(CompositeUploader.PARTS_PREFIX));
+        Mockito.verify(spyStorage).copy(Mockito.any(Storage.CopyRequest.class));
+        Mockito.verify(spyStorage).delete(temporary);
+        Assert.assertNull(spyStorage.get(temporary));
+        Assert.assertArrayEquals(Files.toByteArray(sourceFile),
+                spyStorage.readAllBytes(BlobId.of(DUMMY_BUCKET, DUMMY_BASE_DIR + DUMMY_FILE_NAME)));
+    }
+
+    @Test
+    public void testCorruptedStagedUploadDoesNotReplaceTarget() throws IOException, ConnectionException,
+            AuthenticationException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        // GCS reports another CRC32C for every temporary object
+        Mockito.doAnswer(invocation -> {
+            final Blob blob = (Blob) invocation.callRealMethod();
+            final BlobId blobId = invocation.getArgument(0);
+            return blob != null && blobId.getName().startsWith(CompositeUploader.PARTS_PREFIX)
+                    ? blob.toBuilder().setCrc32c("AAAAAA==").build()
+                    : blob;
+        }).when(spyStorage).get(Mockito.any(BlobId.class), Mockito.<Storage.BlobGetOption>any());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.setStagedUploads(true);
+        storageWagon.connect(fakeRepository());
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 1024 * 1024 + 1);
+
+        try {
+            storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+            Assert.fail("Expected the corrupted upload to fail");
+        } catch (TransferFailedException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Failed to verify"));
+        }
+
+        final ArgumentCaptor<BlobInfo> blobInfo = ArgumentCaptor.forClass(BlobInfo.class);
+        Mockito.verify(spyStorage).writer(blobInfo.capture());
+        Mockito.verify(spyStorage, Mockito.never()).copy(Mockito.any(Storage.CopyRequest.class));
+        Mockito.verify(spyStorage).delete(blobInfo.getValue().getBlobId());
+        Assert.assertNull(spyStorage.get(BlobId.of(DUMMY_BUCKET, DUMMY_BASE_DIR + DUMMY_FILE_NAME)));
+    }
+
+    @Test
+    public void testStreamUploadSendsKnownCrc32c() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final File stateDirectory = sourceFolder.newFolder("state");
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 1024 * 1024 + 1);
+        ChecksumCache.shared(stateDirectory.toPath().resolve(GcpStorageWagon.CHECKSUMS_FILE))
+                .crc32c(sourceFile, ByteBuffer.allocate(4096));
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.setSkipUnchangedUploads(true);
+        storageWagon.setStateDirectory(stateDirectory);
+        storageWagon.connect(fakeRepository());
+
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+
+        // The cached CRC32C is checked by GCS when the upload is committed, no temporary object is needed
+        final ArgumentCaptor<BlobInfo> blobInfo = ArgumentCaptor.forClass(BlobInfo.class);
+        Mockito.verify(spyStorage).writer(blobInfo.capture(), Mockito.eq(Storage.BlobWriteOption.crc32cMatch()));
+        Assert.assertEquals(DUMMY_BASE_DIR + DUMMY_FILE_NAME, blobInfo.getValue().getName());
+        Assert.assertEquals(Files.asByteSource(sourceFile).hash(Hashing.crc32c()).asInt(),
+                Ints.fromByteArray(BaseEncoding.base64().decode(blobInfo.getValue().getCrc32c())));
+        Mockito.verify(spyStorage, Mockito.never()).copy(Mockito.any(Storage.CopyRequest.class));
+    }
+
+    @Test
+    public void testCompressedUploads() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage storage = fakeStorage();
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        storageWagon.setCompressUploads(true);
+        storageWagon.setCompressExtensions("pom, .XML");
+        // The pom is compressed into a single shot buffer, the larger metadata on its way into a resumable upload
+        storageWagon.setSingleShotUploadThreshold(40 * 1024);
+        storageWagon.connect(fakeRepository());
+        final File pom = sourceFolder.newFile("artifact-1.0.pom");
+        writeContentToFile(pom);
+        final File metadata = sourceFolder.newFile("maven-metadata.xml");
+        for (int i = 0; i < 4; i++) {
+            Files.append(Files.asCharSource(pom, StandardCharsets.UTF_8).read(), metadata, StandardCharsets.UTF_8);
+        }
+        final File jar = sourceFolder.newFile("artifact-1.0.jar");
+        writeContentToFile(jar);
+
+        storageWagon.put(pom, "artifact-1.0.pom");
+        storageWagon.put(metadata, "maven-metadata.xml");
+        storageWagon.put(jar, "artifact-1.0.jar");
+
+        for (String resource : Arrays.asList("artifact-1.0.pom", "maven-metadata.xml")) {
+            final Blob blob = storage.get(DUMMY_BUCKET, DUMMY_BASE_DIR + resource);
+            Assert.assertEquals("gzip", blob.getContentEncoding());
+            Assert.assertTrue(blob.getSize() * 10 < new File(sourceFolder.getRoot(), resource).length());
+        }
+        Assert.assertNull(storage.get(DUMMY_BUCKET, DUMMY_BASE_DIR + "artifact-1.0.jar").getContentEncoding());
+
+        final File destination = new File(m2EmulatedFolder.getRoot(), "maven-metadata.xml");
+        storageWagon.get("maven-metadata.xml", destination);
+        Assert.assertArrayEquals(Files.toByteArray(metadata), Files.toByteArray(destination));
+        storageWagon.get("artifact-1.0.pom", destination);
+        Assert.assertArrayEquals(Files.toByteArray(pom), Files.toByteArray(destination));
+        Assert.assertEquals(1, m2EmulatedFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void testFailedCompressedUploadLeavesNoBlob() throws IOException, ConnectionException,
+            AuthenticationException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final WriteChannel[] writer = new WriteChannel[1];
+        Mockito.doAnswer(invocation -> writer[0] = Mockito.spy((WriteChannel) invocation.callRealMethod()))
+                .when(spyStorage).writer(Mockito.any(BlobInfo.class));
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.setCompressUploads(true);
+        storageWagon.setSingleShotUploadThreshold(40 * 1024);
+        storageWagon.setProgressInterval(0);
+        // The input fails once part of the compressed content was written
+        final TransferListener listener = Mockito.mock(TransferListener.class);
+        final int[] updates = new int[1];
+        Mockito.doAnswer(invocation -> {
+            if (++updates[0] > 1) {
+                throw new IllegalStateException("Input failed");
+            }
+            return null;
+        }).when(listener).transferProgress(Mockito.any(TransferEvent.class), Mockito.any(byte[].class), Mockito.anyInt());
+        storageWagon.addTransferListener(listener);
+        storageWagon.connect(fakeRepository());
+        final File metadata = CompositeUploaderTest.randomFile(sourceFolder.newFile("maven-metadata.xml"), 1024 * 1024);
+
+        try {
+            storageWagon.put(metadata, "maven-metadata.xml");
+            Assert.fail("Expected the failure of the input");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Input failed", e.getMessage());
+        }
+
+        // Only closing the writer commits the upload
+        Mockito.verify(spyStorage).writer(Mockito.any(BlobInfo.class));
+        Mockito.verify(writer[0], Mockito.never()).close();
+        Mockito.verify(spyStorage, Mockito.never()).copy(Mockito.any(Storage.CopyRequest.class));
+        try {
+            spyStorage.readAllBytes(BlobId.of(DUMMY_BUCKET, DUMMY_BASE_DIR + "maven-metadata.xml"));
+            Assert.fail("Expected no content for the failed upload");
+        } catch (StorageException e) {
+            Assert.assertEquals(404, e.getCode());
+        }
+    }
+
+    @Test
+    public void testSingleShotUploadThreshold() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.setSingleShotUploadThreshold(16 * 1024);
+        storageWagon.connect(fakeRepository());
+        final File small = sourceFolder.newFile("small.pom");
+        writeContentToFile(small, 16 * 1024);
+        final File large = sourceFolder.newFile("large.jar");
+        writeContentToFile(large, 16 * 1024 + 1);
+
+        storageWagon.put(small, "small.pom");
+        storageWagon.put(small, "again.pom");
+        storageWagon.put(large, "large.jar");
+
+        // The large file is streamed instead
+        Mockito.verify(spyStorage, Mockito.times(2)).create(Mockito.any(BlobInfo.class), Mockito.any(byte[].class),
+                Mockito.eq(0), Mockito.eq(16 * 1024));
+        Assert.assertEquals(Files.asByteSource(small).hash(Hashing.crc32c()).asInt(), Ints.fromByteArray(BaseEncoding
+                .base64().decode(spyStorage.get(DUMMY_BUCKET, DUMMY_BASE_DIR + "small.pom").getCrc32c())));
+        Assert.assertEquals(16 * 1024 + 1, spyStorage.get(DUMMY_BUCKET, DUMMY_BASE_DIR + "large.jar").getSize().intValue());
+        Assert.assertArrayEquals(Files.toByteArray(small),
+                spyStorage.readAllBytes(BlobId.of(DUMMY_BUCKET, DUMMY_BASE_DIR + "again.pom")));
+    }
+
+    @Test
+    public void testChecksumSidecarsAreKeptInMetadata() throws IOException, ConnectionException,
+            AuthenticationException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = BatchingStorage.wrap(fakeStorage());
+        // LocalStorageHelper does not implement patch, emulate it by writing the blob again with the merged metadata
+        Mockito.doAnswer(invocation -> {
+            final BlobInfo patch = invocation.getArgument(0);
+            final Blob blob = spyStorage.get(patch.getBlobId().getBucket(), patch.getName());
+            final Map<String, String> metadata = new HashMap<>();
+            if (blob.getMetadata() != null) {
+                metadata.putAll(blob.getMetadata());
+            }
+            metadata.putAll(patch.getMetadata());
+            return spyStorage.create(blob.toBuilder().setMetadata(metadata).build(),
+                    spyStorage.readAllBytes(blob.getBlobId()));
+        }).when(spyStorage).update(Mockito.any(BlobInfo.class), Mockito.any());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.setChecksumMetadata(true);
+        storageWagon.connect(fakeRepository());
+        final File artifact = sourceFolder.newFile("artifact-1.0.jar");
+        writeContentToFile(artifact);
+        final File sha1 = sourceFolder.newFile("artifact-1.0.jar.sha1");
+        java.nio.file.Files.write(sha1.toPath(), Files.asByteSource(artifact).hash(Hashing.sha1()).toString()
+                .getBytes(StandardCharsets.US_ASCII));
+
+        // Without the artifact there is no blob to keep the sidecar
+        storageWagon.put(sha1, "early/artifact-1.0.jar.sha1");
+        Assert.assertNotNull(spyStorage.get(DUMMY_BUCKET, DUMMY_BASE_DIR + "early/artifact-1.0.jar.sha1"));
+
+        storageWagon.put(artifact, "artifact-1.0.jar");
+        storageWagon.put(sha1, "artifact-1.0.jar.sha1");
+        storageWagon.put(sha1, "artifact-1.0.jar.sha1");
+
+        Mockito.verify(spyStorage).update(Mockito.any(BlobInfo.class), Mockito.any());
+        Assert.assertNull(spyStorage.get(DUMMY_BUCKET, DUMMY_BASE_DIR + "artifact-1.0.jar.sha1"));
+        Assert.assertEquals(Files.asCharSource(sha1, StandardCharsets.US_ASCII).read(), spyStorage
+                .get(DUMMY_BUCKET, DUMMY_BASE_DIR + "artifact-1.0.jar").getMetadata().get("checksum-sha1"));
+
+        Assert.assertTrue(storageWagon.resourceExists("artifact-1.0.jar.sha1"));
+        Assert.assertFalse(storageWagon.resourceExists("artifact-1.0.jar.md5"));
+        final Map<String, Boolean> exists = storageWagon.resourcesExist(
+                Arrays.asList("artifact-1.0.jar.sha1", "artifact-1.0.jar.md5"));
+        Assert.assertEquals(Arrays.asList(true, false), new ArrayList<>(exists.values()));
+        final File destination = new File(m2EmulatedFolder.getRoot(), "artifact-1.0.jar.sha1");
+        storageWagon.get("artifact-1.0.jar.sha1", destination);
+        Assert.assertArrayEquals(Files.toByteArray(sha1), Files.toByteArray(destination));
+        Assert.assertTrue(storageWagon.getIfNewer("artifact-1.0.jar.sha1", destination, 0));
+
+        // Replacing the artifact drops the checksum with the old content
+        storageWagon.put(sha1, "artifact-1.0.jar");
+        Assert.assertFalse(storageWagon.resourceExists("artifact-1.0.jar.sha1"));
+    }
+
+    @Test
+    public void testPutSkipsUnchangedContent() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final TransferListener listener = Mockito.mock(TransferListener.class);
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.setSkipUnchangedUploads(true);
+        storageWagon.setStateDirectory(sourceFolder.newFolder("state"));
+        storageWagon.addTransferListener(listener);
+        storageWagon.connect(fakeRepository());
+        final File sourceFile = sourceFolder.newFile(DUMMY_FILE_NAME);
+        writeContentToFile(sourceFile);
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+        Mockito.verify(spyStorage).create(Mockito.any(BlobInfo.class), Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt());
+
+        Mockito.clearInvocations(spyStorage);
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+        Mockito.verify(spyStorage, Mockito.never()).create(Mockito.any(BlobInfo.class), Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt());
+        Mockito.verify(listener, Mockito.times(2)).transferCompleted(Mockito.any(TransferEvent.class));
+
+        // Changed content is uploaded again
+        Files.write(new byte[]{1, 2, 3}, sourceFile);
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+        Mockito.verify(spyStorage).create(Mockito.any(BlobInfo.class), Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt());
+        storageWagon.disconnect();
+        Assert.assertTrue(new File(storageWagon.getStateDirectory(), GcpStorageWagon.CHECKSUMS_FILE).isFile());
+    }
+
+    @Test
+    public void testResourcesExist() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage storage = BatchingStorage.wrap(fakeStorage());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        putFileUtil(storageWagon, DUMMY_FILE_NAME);
+        Assert.assertTrue(storageWagon.resourceExists(DUMMY_FILE_NAME));
+
+        final Map<String, Boolean> exists = storageWagon.resourcesExist(Arrays.asList("missing-1", DUMMY_FILE_NAME, "missing-2"));
+
+        Assert.assertEquals(Arrays.asList("missing-1", DUMMY_FILE_NAME, "missing-2"), new ArrayList<>(exists.keySet()));
+        Assert.assertEquals(Arrays.asList(false, true, false), new ArrayList<>(exists.values()));
+        // The resource checked before comes from the metadata cache, the rest from one batch
+        Mockito.verify(storage, Mockito.times(1)).batch();
+
+        // Results of the bulk check are cached as well
+        Mockito.clearInvocations(storage);
+        Assert.assertFalse(storageWagon.resourceExists("missing-1"));
+        Mockito.verify(storage, Mockito.never()).get(Mockito.any(BlobId.class));
+    }
+
+    @Test
+    public void testGetIfNewerConditional() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final File stateDirectory = sourceFolder.newFolder("state");
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.setConditionalGets(true);
+        storageWagon.setStateDirectory(stateDirectory);
+        storageWagon.connect(fakeRepository());
+        // Resumable uploads of the fake storage assign generations, which larger files go through
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 1024 * 1024 + 1);
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+        final File localDestinationFile = new File(m2EmulatedFolder.getRoot().getPath() + "/" + DUMMY_FILE_NAME);
+        storageWagon.get(DUMMY_FILE_NAME, localDestinationFile);
+        storageWagon.disconnect();
+
+        final GcpStorageWagon nextWagon = new GcpStorageWagon(spyStorage);
+        nextWagon.setConditionalGets(true);
+        nextWagon.setStateDirectory(stateDirectory);
+        nextWagon.connect(fakeRepository());
+        final BlobId blobId = BlobId.of(DUMMY_BUCKET, DUMMY_BASE_DIR + DUMMY_FILE_NAME);
+        final Long generation = spyStorage.get(blobId).getGeneration();
+        Mockito.doThrow(new StorageException(304, "Not Modified"))
+                .when(spyStorage).get(blobId, Storage.BlobGetOption.generationNotMatch(generation));
+        Mockito.clearInvocations(spyStorage);
+
+        Assert.assertFalse(nextWagon.getIfNewer(DUMMY_FILE_NAME, localDestinationFile, 0L));
+        Mockito.verify(spyStorage, Mockito.never()).reader(Mockito.any(BlobId.class));
+        Mockito.verify(spyStorage, Mockito.never()).get(blobId);
+
+        // The fake storage ignores the precondition and answers with the metadata, as GCS does for a new generation,
+        // which is downloaded straight away and remembered
+        Mockito.doCallRealMethod().when(spyStorage).get(blobId, Storage.BlobGetOption.generationNotMatch(generation));
+        Assert.assertTrue(nextWagon.getIfNewer(DUMMY_FILE_NAME, localDestinationFile, System.currentTimeMillis()));
+        Mockito.verify(spyStorage).reader(Mockito.any(BlobId.class));
+        Mockito.verify(spyStorage, Mockito.never()).get(blobId);
+        nextWagon.disconnect();
+        Assert.assertTrue(new File(stateDirectory, GcpStorageWagon.GENERATIONS_FILE).isFile());
+    }
+
+    @Test
+    public void testGetServedFromDownloadCache() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final File cacheDirectory = sourceFolder.newFolder("cache");
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.setDownloadCacheDirectory(cacheDirectory);
+        storageWagon.connect(fakeRepository());
+        // Resumable uploads of the fake storage assign generations, which larger files go through
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 1024 * 1024 + 1);
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+        storageWagon.get(DUMMY_FILE_NAME, new File(m2EmulatedFolder.getRoot(), "first/" + DUMMY_FILE_NAME));
+        storageWagon.disconnect();
+        Mockito.verify(spyStorage).reader(Mockito.any(BlobId.class));
+
+        final GcpStorageWagon nextWagon = new GcpStorageWagon(spyStorage);
+        nextWagon.setDownloadCacheDirectory(cacheDirectory);
+        nextWagon.connect(fakeRepository());
+        Mockito.clearInvocations(spyStorage);
+        final File localDestinationFile = new File(m2EmulatedFolder.getRoot(), "second/" + DUMMY_FILE_NAME);
+        final long[] progress = new long[1];
+        nextWagon.addTransferListener(progressListener(progress));
+        nextWagon.get(DUMMY_FILE_NAME, localDestinationFile);
+        nextWagon.disconnect();
+
+        Mockito.verify(spyStorage, Mockito.never()).reader(Mockito.any(BlobId.class));
+        Assert.assertArrayEquals(Files.toByteArray(sourceFile), Files.toByteArray(localDestinationFile));
+        Assert.assertEquals(sourceFile.length(), progress[0]);
+        Assert.assertFalse(new File(localDestinationFile.getParentFile(), DUMMY_FILE_NAME + ".part").exists());
+    }
+
+    @Test
+    public void testCorruptedDownloadCacheEntryIsDownloadedAgain() throws IOException, ConnectionException,
+            AuthenticationException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final File cacheDirectory = sourceFolder.newFolder("cache");
+        final File stateDirectory = sourceFolder.newFolder("state");
+        final File sourceFile = CompositeUploaderTest.randomFile(sourceFolder.newFile(DUMMY_FILE_NAME), 1024 * 1024 + 1);
+        // The fake storage only keeps a CRC32C sent along with the upload, which it does when the CRC32C is cached
+        ChecksumCache.shared(stateDirectory.toPath().resolve(GcpStorageWagon.CHECKSUMS_FILE))
+                .crc32c(sourceFile, ByteBuffer.allocate(4096));
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.setDownloadCacheDirectory(cacheDirectory);
+        storageWagon.setSkipUnchangedUploads(true);
+        storageWagon.setStateDirectory(stateDirectory);
+        storageWagon.connect(fakeRepository());
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+        storageWagon.get(DUMMY_FILE_NAME, new File(m2EmulatedFolder.getRoot(), "first/" + DUMMY_FILE_NAME));
+        // Same size, different content
+        try (Stream<Path> entries = java.nio.file.Files.walk(cacheDirectory.toPath().resolve("entries"))) {
+            for (Path entry : (Iterable<Path>) entries.filter(java.nio.file.Files::isRegularFile)::iterator) {
+                java.nio.file.Files.write(entry, new byte[(int) sourceFile.length()]);
+            }
+        }
+        Mockito.clearInvocations(spyStorage);
+
+        final File localDestinationFile = new File(m2EmulatedFolder.getRoot(), "second/" + DUMMY_FILE_NAME);
+        final long[] progress = new long[1];
+        storageWagon.addTransferListener(progressListener(progress));
+        storageWagon.get(DUMMY_FILE_NAME, localDestinationFile);
+        storageWagon.disconnect();
+
+        Mockito.verify(spyStorage).reader(Mockito.any(BlobId.class));
+        Assert.assertArrayEquals(Files.toByteArray(sourceFile), Files.toByteArray(localDestinationFile));
+        // The content copied from the cache was reported before it failed verification, it is not reported twice
+        Assert.assertEquals(sourceFile.length(), progress[0]);
+    }
+
+    private static TransferListener progressListener(long[] progress) {
+        final TransferListener listener = Mockito.mock(TransferListener.class);
+        Mockito.doAnswer(invocation -> progress[0] += (int) invocation.getArgument(2))
+                .when(listener).transferProgress(Mockito.any(TransferEvent.class), Mockito.any(byte[].class), Mockito.anyInt());
+        return listener;
+    }
+
     @Test(expected = ResourceDoesNotExistException.class)
     public void testGetIfNewerNoResource() throws IOException, ConnectionException, AuthenticationException,
             AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
@@ -297,14 +1237,49 @@ public class GcpStorageWagonTest {
         Assert.assertTrue(storageWagon.resourceExists(DUMMY_FILE_NAME));
     }
 
+    @Test
+    public void testResourceExistsRetriesThrottledLookup() throws ConnectionException, AuthenticationException,
+            IOException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.setRetryInitialBackoff(1);
+        final File sourceFile = sourceFolder.newFile(DUMMY_FILE_NAME);
+        writeContentToFile(sourceFile);
+        storageWagon.connect(fakeRepository());
+        storageWagon.put(sourceFile, DUMMY_FILE_NAME);
+        Mockito.doThrow(new StorageException(429, "Too many requests"))
+                .doThrow(new StorageException(503, "Service unavailable"))
+                .doCallRealMethod()
+                .when(spyStorage).get(Mockito.any(BlobId.class));
+
+        Assert.assertTrue(storageWagon.resourceExists(DUMMY_FILE_NAME));
+        Mockito.verify(spyStorage, Mockito.times(3)).get(Mockito.any(BlobId.class));
+    }
+
+    @Test
+    public void testResourceExistsDoesNotRetryForbiddenLookup() throws ConnectionException, AuthenticationException,
+            AuthorizationException {
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.connect(fakeRepository());
+        Mockito.doThrow(new StorageException(403, "Forbidden")).when(spyStorage).get(Mockito.any(BlobId.class));
+
+        try {
+            storageWagon.resourceExists(DUMMY_FILE_NAME);
+            Assert.fail("Expected the lookup to fail");
+        } catch (TransferFailedException e) {
+            Assert.assertEquals(403, ((StorageException) e.getCause()).getCode());
+        }
+        Mockito.verify(spyStorage, Mockito.times(1)).get(Mockito.any(BlobId.class));
+    }
+
     @Test
     public void testGetFileListAndPutDirectory() throws ConnectionException, AuthenticationException,
             IOException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
         // Prepare folder
         // - com/1.txt
         // - com/2.txt
-        final Storage storage = fakeStorage();
-        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(SynchronizedStorage.wrap(fakeStorage()));
         final List<String> expectedFiles = Arrays.asList("1.txt", "2.txt");
         final File comFolder = sourceFolder.newFolder("com");
 
@@ -324,6 +1299,185 @@ public class GcpStorageWagonTest {
         Assert.assertSame(actualFiles.size(), 2);
     }
 
+    @Test
+    public void testListFilesCurrentDirectory() throws IOException, ConnectionException, AuthenticationException,
+            AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final Storage storage = Mockito.spy(fakeStorage());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        storageWagon.connect(fakeRepository());
+        for (String file : Arrays.asList("com/1.txt", "com/2.txt", "com/sub/3.txt", "company.txt")) {
+            storageWagon.put(sourceFolder.newFile(file.replace('/', '-')), file);
+        }
+
+        final List<String> children;
+        try (Stream<String> names = storageWagon.listFiles("com", true)) {
+            children = names.sorted().collect(Collectors.toList());
+        }
+
+        Assert.assertEquals(Arrays.asList(DUMMY_BASE_DIR + "com/1.txt", DUMMY_BASE_DIR + "com/2.txt",
+                DUMMY_BASE_DIR + "com/sub/"), children);
+        final ArgumentCaptor<Storage.BlobListOption> options = ArgumentCaptor.forClass(Storage.BlobListOption.class);
+        Mockito.verify(storage).list(Mockito.eq(DUMMY_BUCKET), options.capture());
+        Assert.assertTrue(options.getAllValues().contains(Storage.BlobListOption.fields(Storage.BlobField.NAME)));
+        Assert.assertTrue(options.getAllValues().contains(Storage.BlobListOption.currentDirectory()));
+    }
+
+    @Test
+    public void testListFilesIsLazy() throws ConnectionException, AuthenticationException, TransferFailedException {
+        final Storage storage = Mockito.mock(Storage.class);
+        final Blob first = Mockito.mock(Blob.class);
+        Mockito.when(first.getName()).thenReturn(DUMMY_BASE_DIR + "first");
+        @SuppressWarnings("unchecked")
+        final Page<Blob> page = Mockito.mock(Page.class);
+        // Fetching anything past the first blob fails, as a failing next page would
+        Mockito.when(page.iterateAll()).thenReturn(() -> Stream.<Blob>concat(Stream.of(first),
+                Stream.generate(() -> {
+                    throw new StorageException(500, "Next page");
+                })).iterator());
+        Mockito.when(storage.list(Mockito.eq(DUMMY_BUCKET), Mockito.<Storage.BlobListOption>any())).thenReturn(page);
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        storageWagon.connect(fakeRepository());
+
+        try (Stream<String> names = storageWagon.listFiles("", false)) {
+            Assert.assertEquals(Optional.of(DUMMY_BASE_DIR + "first"), names.findFirst());
+        }
+    }
+
+    @Test
+    public void testPutDirectoryRecursive() throws ConnectionException, AuthenticationException,
+            IOException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        // Prepare folder
+        // - site/index.html
+        // - site/css/site.css
+        // - site/apidocs/com/lahsivjar/Wagon.html
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(SynchronizedStorage.wrap(fakeStorage()));
+        final List<String> expectedFiles = Arrays.asList("index.html", "css/site.css", "apidocs/com/lahsivjar/Wagon.html");
+        final File siteFolder = sourceFolder.newFolder("site");
+
+        for (String file : expectedFiles) {
+            final File fileObj = new File(siteFolder, file);
+            Assert.assertTrue(fileObj.getParentFile().isDirectory() || fileObj.getParentFile().mkdirs());
+            writeContentToFile(fileObj);
+        }
+
+        storageWagon.connect(fakeRepository());
+        storageWagon.putDirectory(siteFolder, "site");
+
+        for (String file : expectedFiles) {
+            Assert.assertTrue(storageWagon.resourceExists("site/" + file));
+        }
+        Assert.assertEquals(3, storageWagon.getFileList("site").size());
+    }
+
+    @Test
+    public void testPutDirectoryFollowsSymbolicLinks() throws ConnectionException, AuthenticationException,
+            IOException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        // Prepare folder
+        // - site/index.html -> shared/index.html
+        // - site/css -> shared/css
+        final File sharedFolder = sourceFolder.newFolder("shared");
+        final File index = new File(sharedFolder, "index.html");
+        writeContentToFile(index);
+        final File css = new File(sharedFolder, "css/site.css");
+        Assert.assertTrue(css.getParentFile().mkdirs());
+        writeContentToFile(css);
+        final File siteFolder = sourceFolder.newFolder("site");
+        java.nio.file.Files.createSymbolicLink(siteFolder.toPath().resolve("index.html"), index.toPath());
+        java.nio.file.Files.createSymbolicLink(siteFolder.toPath().resolve("css"), css.getParentFile().toPath());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(SynchronizedStorage.wrap(fakeStorage()));
+        storageWagon.connect(fakeRepository());
+
+        storageWagon.putDirectory(siteFolder, "site");
+
+        Assert.assertTrue(storageWagon.resourceExists("site/index.html"));
+        Assert.assertTrue(storageWagon.resourceExists("site/css/site.css"));
+        Assert.assertEquals(2, storageWagon.getFileList("site").size());
+    }
+
+    @Test
+    public void testPutDirectoryUploadsConcurrently() throws ConnectionException, AuthenticationException,
+            IOException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final File parallelFolder = sourceFolder.newFolder("parallel");
+        for (int i = 0; i < 8; i++) {
+            writeContentToFile(new File(parallelFolder, i + ".txt"));
+        }
+        final int maxParallelUploads = 4;
+        // Every upload waits for the others of its round to start, so the peak does not depend on timing. The wait
+        // happens outside of the lock of the fake storage and of the listeners.
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final CountDownLatch round = new CountDownLatch(maxParallelUploads);
+        final Storage delegate = SynchronizedStorage.wrap(fakeStorage());
+        final Storage storage = (Storage) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Storage.class}, (proxy, method, args) -> {
+                    final boolean upload = method.getName().equals("create");
+                    if (upload) {
+                        peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        round.countDown();
+                        round.await(10, TimeUnit.SECONDS);
+                    }
+                    try {
+                        return method.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (upload) {
+                            inFlight.decrementAndGet();
+                        }
+                    }
+                });
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(storage);
+        storageWagon.setMaxParallelUploads(maxParallelUploads);
+        storageWagon.connect(fakeRepository());
+
+        storageWagon.putDirectory(parallelFolder, "parallel");
+
+        Assert.assertEquals(maxParallelUploads, peak.get());
+        Assert.assertEquals(8, storageWagon.getFileList("parallel").size());
+    }
+
+    @Test
+    public void testPutDirectoryFiresEventsPerFile() throws ConnectionException, AuthenticationException,
+            IOException, AuthorizationException, ResourceDoesNotExistException, TransferFailedException {
+        final File comFolder = sourceFolder.newFolder("com");
+        for (int i = 0; i < 5; i++) {
+            writeContentToFile(new File(comFolder, i + ".txt"));
+        }
+
+        final TransferListener listener = Mockito.mock(TransferListener.class);
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(SynchronizedStorage.wrap(fakeStorage()));
+        storageWagon.addTransferListener(listener);
+        storageWagon.connect(fakeRepository());
+        storageWagon.putDirectory(comFolder, "com");
+
+        Mockito.verify(listener, Mockito.times(5)).transferInitiated(Mockito.any(TransferEvent.class));
+        Mockito.verify(listener, Mockito.times(5)).transferStarted(Mockito.any(TransferEvent.class));
+        Mockito.verify(listener, Mockito.times(5)).transferCompleted(Mockito.any(TransferEvent.class));
+    }
+
+    @Test
+    public void testPutDirectoryReportsAllFailures() throws ConnectionException, AuthenticationException,
+            IOException, AuthorizationException, ResourceDoesNotExistException {
+        final File comFolder = sourceFolder.newFolder("com");
+        for (int i = 0; i < 4; i++) {
+            writeContentToFile(new File(comFolder, i + ".txt"));
+        }
+
+        final Storage spyStorage = Mockito.spy(fakeStorage());
+        Mockito.doThrow(new StorageException(503, "Service unavailable"))
+                .when(spyStorage).create(Mockito.any(BlobInfo.class), Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt());
+        final GcpStorageWagon storageWagon = new GcpStorageWagon(spyStorage);
+        storageWagon.connect(fakeRepository());
+
+        try {
+            storageWagon.putDirectory(comFolder, "com");
+            Assert.fail("Expected putDirectory to fail");
+        } catch (TransferFailedException e) {
+            Assert.assertTrue(e.getMessage().startsWith("4 of 4 transfers failed"));
+            Assert.assertEquals(3, e.getSuppressed().length);
+        }
+    }
+
     @Test
     public void testDisconnect() throws ConnectionException {
         final GcpStorageWagon spyStorageWagon = Mockito.spy(new GcpStorageWagon(fakeStorage()));
@@ -0,0 +1,142 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.BlobId;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class GenerationStoreTest {
+
+    private static final BlobId BLOB_ID = BlobId.of("bucket", "com/lahsivjar/artifact-1.0.jar");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File downloaded(String name) throws IOException {
+        final File file = folder.newFile(name);
+        Files.write(file.toPath(), new byte[]{1, 2, 3});
+        return file;
+    }
+
+    @Test
+    public void testRecordsSurviveSave() throws IOException {
+        final Path storeFile = folder.getRoot().toPath().resolve("state").resolve("generations.properties");
+        final File destination = downloaded("artifact-1.0.jar");
+        final GenerationStore store = GenerationStore.load(storeFile);
+        store.put(BLOB_ID, 42L, destination);
+        store.save();
+
+        final GenerationStore reloaded = GenerationStore.load(storeFile);
+        Assert.assertEquals(Long.valueOf(42), reloaded.get(BLOB_ID, destination));
+        Assert.assertNull(reloaded.get(BlobId.of("bucket", "other"), destination));
+    }
+
+    @Test
+    public void testChangedDestinationIsNotTrusted() throws IOException {
+        final File destination = downloaded("artifact-1.0.jar");
+        final GenerationStore store = new GenerationStore(folder.getRoot().toPath().resolve("generations.properties"));
+        store.put(BLOB_ID, 42L, destination);
+
+        Files.write(destination.toPath(), new byte[]{1, 2, 3, 4});
+        Assert.assertNull(store.get(BLOB_ID, destination));
+
+        Assert.assertTrue(destination.delete());
+        Assert.assertNull(store.get(BLOB_ID, destination));
+    }
+
+    @Test
+    public void testSaveMergesRecordsOfOtherProcesses() throws IOException {
+        final Path storeFile = folder.getRoot().toPath().resolve("generations.properties");
+        final File first = downloaded("first.jar");
+        final File second = downloaded("second.jar");
+        final GenerationStore firstStore = GenerationStore.load(storeFile);
+        final GenerationStore secondStore = GenerationStore.load(storeFile);
+
+        firstStore.put(BLOB_ID, 1L, first);
+        secondStore.put(BLOB_ID, 2L, second);
+        firstStore.save();
+        secondStore.save();
+
+        final GenerationStore reloaded = GenerationStore.load(storeFile);
+        Assert.assertEquals(Long.valueOf(1), reloaded.get(BLOB_ID, first));
+        Assert.assertEquals(Long.valueOf(2), reloaded.get(BLOB_ID, second));
+    }
+
+    @Test
+    public void testSavingAppendsOnlyChangedRecords() throws IOException {
+        final Path storeFile = folder.getRoot().toPath().resolve("generations.properties");
+        final File first = downloaded("first.jar");
+        final File second = downloaded("second.jar");
+        final GenerationStore store = GenerationStore.load(storeFile);
+
+        store.put(BLOB_ID, 1L, first);
+        store.save();
+        store.put(BLOB_ID, 2L, second);
+        store.save();
+        store.save();
+
+        // The key and the record each hold the path once
+        final String content = new String(Files.readAllBytes(storeFile), StandardCharsets.ISO_8859_1);
+        Assert.assertEquals(2, content.split("first\\.jar", -1).length - 1);
+        final GenerationStore reloaded = GenerationStore.load(storeFile);
+        Assert.assertEquals(Long.valueOf(1), reloaded.get(BLOB_ID, first));
+        Assert.assertEquals(Long.valueOf(2), reloaded.get(BLOB_ID, second));
+    }
+
+    @Test
+    public void testRecordsOfChangedFilesAreDroppedOnLoad() throws IOException {
+        final Path storeFile = folder.getRoot().toPath().resolve("generations.properties");
+        final GenerationStore store = GenerationStore.load(storeFile);
+        final File kept = downloaded("kept.jar");
+        store.put(BLOB_ID, 1L, kept);
+        for (int i = 0; i < 4; i++) {
+            final File deleted = downloaded("deleted-" + i + ".jar");
+            store.put(BlobId.of("bucket", "deleted-" + i), 1L, deleted);
+            Assert.assertTrue(deleted.delete());
+        }
+        store.save();
+
+        final GenerationStore reloaded = GenerationStore.load(storeFile);
+        Assert.assertEquals(1, reloaded.size());
+        Assert.assertEquals(Long.valueOf(1), reloaded.get(BLOB_ID, kept));
+        // Most of the file was stale, so it was rewritten without the dropped records
+        Assert.assertFalse(new String(Files.readAllBytes(storeFile), StandardCharsets.ISO_8859_1).contains("deleted"));
+    }
+
+    @Test
+    public void testMalformedRecordsAreSkippedOnLoad() throws IOException {
+        final Path storeFile = folder.getRoot().toPath().resolve("generations.properties");
+        final File destination = downloaded("artifact-1.0.jar");
+        final GenerationStore store = GenerationStore.load(storeFile);
+        store.put(BLOB_ID, 42L, destination);
+        store.save();
+        final String valid = destination.length() + " " + destination.lastModified() + " ";
+        Files.write(storeFile, ("malformed=1 2\n"
+                + "bad-generation=" + valid + "latest " + destination.getAbsolutePath() + "\n"
+                + "bad-size=x " + destination.lastModified() + " 1 " + destination.getAbsolutePath() + "\n")
+                .getBytes(StandardCharsets.ISO_8859_1), java.nio.file.StandardOpenOption.APPEND);
+
+        final GenerationStore reloaded = GenerationStore.load(storeFile);
+        Assert.assertEquals(1, reloaded.size());
+        Assert.assertEquals(Long.valueOf(42), reloaded.get(BLOB_ID, destination));
+    }
+
+    @Test
+    public void testSharedStoreIsReadOncePerProcess() throws IOException {
+        final Path storeFile = folder.getRoot().toPath().resolve("shared").resolve("generations.properties");
+        final File destination = downloaded("artifact-1.0.jar");
+        GenerationStore.shared(storeFile).put(BLOB_ID, 42L, destination);
+
+        // Not saved yet, the record is only known to the process
+        Assert.assertEquals(Long.valueOf(42), GenerationStore.shared(storeFile).get(BLOB_ID, destination));
+        Assert.assertNull(GenerationStore.load(storeFile).get(BLOB_ID, destination));
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.lahsivjar;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GzipCompressionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] metadataXml() {
+        final StringBuilder xml = new StringBuilder("<metadata><versioning><versions>");
+        for (int i = 0; i < 500; i++) {
+            xml.append("<version>1.").append(i).append("</version>");
+        }
+        return xml.append("</versions></versioning></metadata>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ReadableByteChannel channel(byte[] content) {
+        return Channels.newChannel(new ByteArrayInputStream(content));
+    }
+
+    @Test
+    public void testCompressIntoBufferAndDecompress() throws IOException {
+        final byte[] content = metadataXml();
+        final ByteBuffer target = ByteBuffer.allocate((int) GzipCompression.maxCompressedSize(content.length));
+        final AtomicLong progress = new AtomicLong();
+
+        GzipCompression.compress(channel(content), target, ByteBuffer.allocate(1024),
+                data -> progress.addAndGet(data.remaining()));
+
+        Assert.assertEquals(content.length, progress.get());
+        Assert.assertTrue(target.remaining() * 5 < content.length);
+        final Path compressed = folder.getRoot().toPath().resolve("maven-metadata.xml.part");
+        Files.write(compressed, Arrays.copyOfRange(target.array(), 0, target.limit()));
+        Assert.assertTrue(GzipCompression.isCompressed(compressed));
+
+        final Path destination = folder.getRoot().toPath().resolve("maven-metadata.xml");
+        GzipCompression.decompress(compressed, destination);
+        Assert.assertArrayEquals(content, Files.readAllBytes(destination));
+    }
+
+    @Test
+    public void testIncompressibleContentFitsMaxCompressedSize() throws IOException {
+        final byte[] content = new byte[256 * 1024];
+        new Random(1).nextBytes(content);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        GzipCompression.compress(channel(content), output, ByteBuffer.allocate(4096), data -> {
+        });
+
+        Assert.assertTrue(output.size() > content.length);
+        Assert.assertTrue(output.size() <= GzipCompression.maxCompressedSize(content.length));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCompressIntoTooSmallBufferFails() throws IOException {
+        final byte[] content = new byte[64 * 1024];
+        new Random(2).nextBytes(content);
+        GzipCompression.compress(channel(content), ByteBuffer.allocate(1024), ByteBuffer.allocate(4096), data -> {
+        });
+    }
+
+    @Test
+    public void testPlainContentIsNotCompressed() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("artifact.pom");
+        Files.write(file, metadataXml());
+        Assert.assertFalse(GzipCompression.isCompressed(file));
+        Files.write(file, new byte[]{0x1f});
+        Assert.assertFalse(GzipCompression.isCompressed(file));
+    }
+}
@@ -0,0 +1,125 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.StorageException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HedgedReadsTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testFastReadIsNotHedged() {
+        final HedgedReads reads = new HedgedReads(executor, 1000);
+
+        Assert.assertEquals("blob", reads.call(() -> "blob"));
+        Assert.assertEquals(0, reads.hedged());
+    }
+
+    @Test
+    public void testSlowReadIsRacedBySecondAttempt() {
+        final HedgedReads reads = new HedgedReads(executor, 10);
+        final CountDownLatch stuck = new CountDownLatch(1);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final String result = reads.call(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                try {
+                    stuck.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "slow";
+            }
+            return "fast";
+        });
+
+        // The caller does not wait for the first attempt, which is still stuck
+        Assert.assertEquals("fast", result);
+        Assert.assertEquals(1, stuck.getCount());
+        Assert.assertEquals(1, reads.hedged());
+        stuck.countDown();
+    }
+
+    @Test
+    public void testFailedFirstAttemptIsAnsweredByHedge() {
+        final HedgedReads reads = new HedgedReads(executor, 10);
+        final CountDownLatch hedged = new CountDownLatch(1);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final String result = reads.call(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                try {
+                    hedged.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new StorageException(503, "Service Unavailable");
+            }
+            hedged.countDown();
+            return "hedge";
+        });
+
+        Assert.assertEquals("hedge", result);
+    }
+
+    @Test
+    public void testFailureIsThrown() {
+        final HedgedReads reads = new HedgedReads(executor, 1000);
+        try {
+            reads.call(() -> {
+                throw new StorageException(403, "Forbidden");
+            });
+            Assert.fail("Expected the failure of the read");
+        } catch (StorageException e) {
+            Assert.assertEquals(403, e.getCode());
+        }
+    }
+
+    @Test
+    public void testDelayFollowsRecentLatencies() {
+        final HedgedReads reads = new HedgedReads(executor, 0);
+        Assert.assertEquals(0, reads.hedgeDelayNanos());
+
+        reads.call(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "blob";
+        });
+        Assert.assertTrue(reads.hedgeDelayNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testLatenciesOfBucketOutliveReader() {
+        final HedgedReads reads = HedgedReads.forBucket("hedged-reads-test", executor, 0);
+        reads.call(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "blob";
+        });
+
+        // A reader of the next connection starts from the latencies seen so far
+        Assert.assertTrue(HedgedReads.forBucket("hedged-reads-test", executor, 0).hedgeDelayNanos()
+                >= TimeUnit.MILLISECONDS.toNanos(20));
+        Assert.assertEquals(0, HedgedReads.forBucket("other-bucket", executor, 0).hedgeDelayNanos());
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.lahsivjar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverAllValues() {
+        long previous = -1;
+        for (long value : new long[]{0, 1, 31, 32, 33, 63, 64, 1000, 123_456_789, Long.MAX_VALUE}) {
+            final int index = LatencyHistogram.index(value);
+            final long lowest = LatencyHistogram.lowestEquivalent(index);
+            Assert.assertTrue(lowest <= value);
+            // Buckets are no wider than a sixteenth of their values
+            Assert.assertTrue(value - lowest <= Math.max(0, value / 16));
+            Assert.assertTrue(index >= previous);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.percentile(99));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        Assert.assertEquals(1000, histogram.count());
+        Assert.assertEquals(1_000_000, histogram.max());
+        assertWithin(500_000, histogram.percentile(50));
+        assertWithin(990_000, histogram.percentile(99));
+        Assert.assertEquals(1_000_000, histogram.percentile(100));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        Assert.assertTrue(String.format("%d is not within 1/16 of %d", actual, expected),
+                Math.abs(actual - expected) <= expected / 16);
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.lahsivjar;
+
+import com.google.cloud.http.HttpTransportOptions;
+import com.google.cloud.storage.StorageOptions;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.conn.params.ConnRouteParams;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.maven.wagon.proxy.ProxyInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+// The pooled client is built on the deprecated HttpClient 4.0 API, which the assertions inspect
+@SuppressWarnings("deprecation")
+public class PooledStorageClientTest {
+
+    @Test
+    public void testPoolIsSizedFromSettings() {
+        final DefaultHttpClient client = PooledStorageClient.newHttpClient(
+                new StorageClientSettings("project", 1000, 2000, 48, 1000, null));
+
+        final PoolingClientConnectionManager connectionManager =
+                (PoolingClientConnectionManager) client.getConnectionManager();
+        Assert.assertEquals(48, connectionManager.getMaxTotal());
+        Assert.assertEquals(48, connectionManager.getDefaultMaxPerRoute());
+        Assert.assertNull(ConnRouteParams.getDefaultProxy(client.getParams()));
+        connectionManager.shutdown();
+    }
+
+    @Test
+    public void testClientMakesSingleAttempts() {
+        final StorageOptions options = PooledStorageClient.storageOptions(
+                new StorageClientSettings("project", 1000, 2000, 8, 1000, null),
+                HttpTransportOptions.newBuilder().build());
+
+        Assert.assertEquals(1, options.getRetrySettings().getMaxAttempts());
+    }
+
+    @Test
+    public void testProxyIsConfigured() {
+        final ProxyInfo proxyInfo = new ProxyInfo();
+        proxyInfo.setHost("proxy.example.com");
+        proxyInfo.setPort(3128);
+        proxyInfo.setUserName("user");
+        proxyInfo.setPassword("secret");
+
+        final DefaultHttpClient client = PooledStorageClient.newHttpClient(
+                new StorageClientSettings("project", 1000, 2000, 8, 1000, proxyInfo));
+
+        Assert.assertEquals(new HttpHost("proxy.example.com", 3128), ConnRouteParams.getDefaultProxy(client.getParams()));
+        final Credentials credentials = client.getCredentialsProvider()
+                .getCredentials(new AuthScope("proxy.example.com", 3128));
+        Assert.assertNotNull(credentials);
+        Assert.assertEquals("user", credentials.getUserPrincipal().getName());
+        client.getConnectionManager().shutdown();
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.lahsivjar;
+
+import org.apache.maven.wagon.events.TransferEvent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ProgressDispatcherTest {
+
+    private final TransferEvent event = Mockito.mock(TransferEvent.class);
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    private final List<Integer> lengths = new ArrayList<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    private void fire(TransferEvent firedEvent, byte[] buffer, int length) {
+        Assert.assertSame(event, firedEvent);
+        received.write(buffer, 0, length);
+        lengths.add(length);
+    }
+
+    private static byte[] content(int size) {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    @Test
+    public void testSmallUpdatesAreCoalesced() {
+        final byte[] content = content(10_000);
+        final ProgressDispatcher dispatcher = new ProgressDispatcher(event, this::fire, new BufferPool(4096, 1, false),
+                1000, clock::get);
+
+        for (int offset = 0; offset < content.length; offset += 100) {
+            dispatcher.update(ByteBuffer.wrap(content, offset, 100));
+        }
+        dispatcher.close();
+
+        Assert.assertEquals(List.of(4096, 4096, 1808), lengths);
+        Assert.assertArrayEquals(content, received.toByteArray());
+    }
+
+    @Test
+    public void testUpdatesAreCoalescedUpToCoalescedBytes() {
+        final byte[] content = content(200_000);
+        final ProgressDispatcher dispatcher = new ProgressDispatcher(event, this::fire,
+                new BufferPool(ProgressDispatcher.COALESCED_BYTES, 1, false), 1000, clock::get);
+
+        for (int offset = 0; offset < content.length; offset += 1000) {
+            dispatcher.update(ByteBuffer.wrap(content, offset, 1000));
+        }
+        dispatcher.close();
+
+        Assert.assertEquals(List.of(65536, 65536, 65536, 3392), lengths);
+        Assert.assertArrayEquals(content, received.toByteArray());
+    }
+
+    @Test
+    public void testPendingBytesAreFiredAfterInterval() {
+        final ProgressDispatcher dispatcher = new ProgressDispatcher(event, this::fire, new BufferPool(4096, 1, false),
+                100, clock::get);
+
+        dispatcher.update(ByteBuffer.wrap(content(10)));
+        Assert.assertTrue(lengths.isEmpty());
+        clock.addAndGet(100_000_000);
+        dispatcher.update(ByteBuffer.wrap(content(20)));
+        dispatcher.close();
+
+        Assert.assertEquals(List.of(30), lengths);
+    }
+
+    @Test
+    public void testPositionOfUpdateIsKept() {
+        final ProgressDispatcher dispatcher = new ProgressDispatcher(event, this::fire, new BufferPool(16, 1, false),
+                1000, clock::get);
+        final ByteBuffer data = ByteBuffer.allocateDirect(40);
+        data.position(5);
+
+        dispatcher.update(data);
+
+        Assert.assertEquals(5, data.position());
+        Assert.assertEquals(35, data.remaining());
+        Assert.assertEquals(List.of(16, 16), lengths);
+    }
+
+    @Test
+    public void testNothingIsCopiedWithoutListeners() {
+        final BufferPool buffers = Mockito.mock(BufferPool.class);
+        final ProgressDispatcher dispatcher = new ProgressDispatcher(event, null, buffers, 0, clock::get);
+
+        dispatcher.update(ByteBuffer.wrap(content(100)));
+        dispatcher.close();
+
+        Mockito.verifyZeroInteractions(buffers);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.StorageException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RetryPolicyTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<Long> sleeps = new ArrayList<>();
+    private final AtomicInteger retries = new AtomicInteger();
+
+    private RetryPolicy policy(int maxAttempts, long deadlineMillis) {
+        return new RetryPolicy(maxAttempts, 100, 1000, deadlineMillis, clock::get, millis -> {
+            sleeps.add(millis);
+            clock.addAndGet(millis);
+        }, retries::incrementAndGet);
+    }
+
+    private static RetryPolicy.Operation<String> failing(AtomicInteger calls, int failures, int code) {
+        return () -> {
+            if (calls.incrementAndGet() <= failures) {
+                throw new StorageException(code, "Failed");
+            }
+            return "done";
+        };
+    }
+
+    @Test
+    public void testRetriesThrottlingAndServerErrors() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        Assert.assertEquals("done", policy(3, 0).call(null, failing(calls, 2, 429)));
+        Assert.assertEquals(3, calls.get());
+        Assert.assertEquals(2, sleeps.size());
+        Assert.assertEquals(2, retries.get());
+        // Full jitter keeps every backoff below its exponentially growing cap
+        Assert.assertTrue(sleeps.get(0) <= 100);
+        Assert.assertTrue(sleeps.get(1) <= 200);
+    }
+
+    @Test
+    public void testClientErrorsAreNotRetried() {
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            policy(3, 0).call(null, failing(calls, 1, 404));
+            Assert.fail("Expected the client error to be thrown");
+        } catch (StorageException e) {
+            Assert.assertEquals(404, e.getCode());
+        }
+        Assert.assertEquals(1, calls.get());
+        Assert.assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void testAttemptsAreBounded() {
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            policy(3, 0).call(null, failing(calls, 5, 503));
+            Assert.fail("Expected the last failure to be thrown");
+        } catch (StorageException e) {
+            Assert.assertEquals(503, e.getCode());
+        }
+        Assert.assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testNoAttemptStartsAfterDeadline() {
+        final AtomicInteger calls = new AtomicInteger();
+        final RetryPolicy.Operation<String> slow = () -> {
+            clock.addAndGet(600);
+            return failing(calls, 5, 500).call();
+        };
+        try {
+            policy(10, 1000).call(null, slow);
+            Assert.fail("Expected the deadline to stop the retries");
+        } catch (StorageException e) {
+            Assert.assertEquals(500, e.getCode());
+        }
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testRetryableCodes() {
+        Assert.assertTrue(RetryPolicy.isRetryable(new StorageException(0, "Connection reset")));
+        Assert.assertTrue(RetryPolicy.isRetryable(new StorageException(408, "Request timeout")));
+        Assert.assertTrue(RetryPolicy.isRetryable(new StorageException(502, "Bad gateway")));
+        Assert.assertFalse(RetryPolicy.isRetryable(new StorageException(304, "Not modified")));
+        Assert.assertFalse(RetryPolicy.isRetryable(new StorageException(412, "Precondition failed")));
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.lahsivjar;
+
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.StorageException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RetryingWriteChannelTest {
+
+    private final RetryPolicy retryPolicy = new RetryPolicy(3, 100, 1000, 0, () -> 0L, millis -> {
+    }, () -> {
+    });
+
+    @Test
+    public void testFailedChunkIsFlushedAgain() throws IOException {
+        final WriteChannel delegate = Mockito.mock(WriteChannel.class);
+        final List<Integer> writes = new ArrayList<>();
+        Mockito.doAnswer(invocation -> {
+            final ByteBuffer data = invocation.getArgument(0);
+            writes.add(data.remaining());
+            // Like the storage client, the bytes are buffered before the chunk upload fails
+            data.position(data.limit());
+            if (writes.size() == 1) {
+                throw new StorageException(503, "Service Unavailable");
+            }
+            return 0;
+        }).when(delegate).write(Mockito.any(ByteBuffer.class));
+
+        final ByteBuffer data = ByteBuffer.allocate(100);
+        Assert.assertEquals(100, new RetryingWriteChannel(delegate, retryPolicy, null).write(data));
+
+        Assert.assertEquals(0, data.remaining());
+        Assert.assertEquals(Arrays.asList(100, 0), writes);
+    }
+
+    @Test
+    public void testCloseIsRetried() throws IOException {
+        final WriteChannel delegate = Mockito.mock(WriteChannel.class);
+        Mockito.doThrow(new StorageException(503, "Service Unavailable")).doNothing().when(delegate).close();
+
+        new RetryingWriteChannel(delegate, retryPolicy, null).close();
+
+        Mockito.verify(delegate, Mockito.times(2)).close();
+    }
+
+    @Test
+    public void testPermanentFailureIsThrown() throws IOException {
+        final WriteChannel delegate = Mockito.mock(WriteChannel.class);
+        Mockito.doThrow(new StorageException(403, "Forbidden")).when(delegate).write(Mockito.any(ByteBuffer.class));
+
+        try {
+            new RetryingWriteChannel(delegate, retryPolicy, null).write(ByteBuffer.allocate(100));
+            Assert.fail("Expected the failure of the write");
+        } catch (StorageException e) {
+            Assert.assertEquals(403, e.getCode());
+        }
+        Mockito.verify(delegate).write(Mockito.any(ByteBuffer.class));
+    }
+}
@@ -0,0 +1,141 @@
+package com.lahsivjar;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SlicedDownloaderTest {
+
+    private static final String BUCKET = "fake-dummy-bucket";
+    private static final String NAME = "large.tar.gz";
+
+    @Rule
+    public TemporaryFolder destinationFolder = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final RetryPolicy retryPolicy = new RetryPolicy(3, 100, 1000, 0, () -> 0L, millis -> {
+    }, () -> {
+    });
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static byte[] randomContent(int size) {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    @Test
+    public void testDownload() throws IOException {
+        final Storage storage = Mockito.mock(Storage.class,
+                AdditionalAnswers.delegatesTo(SynchronizedStorage.wrap(LocalStorageHelper.getOptions().getService())));
+        final byte[] content = randomContent(5 * 1024 * 1024 + 3);
+        final Blob blob = storage.create(BlobInfo.newBuilder(BUCKET, NAME).build(), content);
+        final File destination = destinationFolder.newFile(NAME);
+        final AtomicLong progress = new AtomicLong();
+
+        final long crc32c = new SlicedDownloader(storage, executor, 4, new BufferPool(64 * 1024, 4, true), retryPolicy, null)
+                .download(storage.get(blob.getBlobId()), destination.toPath(), data -> progress.addAndGet(data.remaining()));
+
+        Assert.assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+        // Combined from the slices, matching the checksum computed over the whole content on upload
+        Assert.assertEquals(blob.getCrc32c(), Checksums.encode(crc32c));
+        Assert.assertEquals(content.length, progress.get());
+        Mockito.verify(storage, Mockito.times(4)).reader(Mockito.any(BlobId.class));
+    }
+
+    @Test
+    public void testDownloadSmallerThanSlices() throws IOException {
+        final Storage storage = SynchronizedStorage.wrap(LocalStorageHelper.getOptions().getService());
+        final byte[] content = randomContent(3);
+        final Blob blob = storage.create(BlobInfo.newBuilder(BUCKET, NAME).build(), content);
+        final File destination = destinationFolder.newFile(NAME);
+
+        final long crc32c = new SlicedDownloader(storage, executor, 8, new BufferPool(1024, 4, true), retryPolicy, null)
+                .download(storage.get(blob.getBlobId()), destination.toPath(), data -> {
+                });
+
+        Assert.assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+        Assert.assertEquals(blob.getCrc32c(), Checksums.encode(crc32c));
+    }
+
+    @Test
+    public void testFailedReadResumesSlice() throws IOException {
+        final Storage delegate = SynchronizedStorage.wrap(LocalStorageHelper.getOptions().getService());
+        final Storage storage = Mockito.mock(Storage.class, AdditionalAnswers.delegatesTo(delegate));
+        final byte[] content = randomContent(256 * 1024);
+        final Blob blob = storage.create(BlobInfo.newBuilder(BUCKET, NAME).build(), content);
+        final List<Long> seeks = new ArrayList<>();
+        final AtomicInteger readers = new AtomicInteger();
+        // The first reader fails after its first read
+        Mockito.doAnswer(invocation -> {
+            final ReadChannel delegateReader = delegate.reader(invocation.<BlobId>getArgument(0));
+            final ReadChannel reader = Mockito.mock(ReadChannel.class, AdditionalAnswers.delegatesTo(delegateReader));
+            Mockito.doAnswer(seek -> {
+                synchronized (seeks) {
+                    seeks.add(seek.getArgument(0));
+                }
+                delegateReader.seek(seek.getArgument(0));
+                return null;
+            }).when(reader).seek(Mockito.anyLong());
+            if (readers.getAndIncrement() == 0) {
+                Mockito.doAnswer(read -> delegateReader.read(read.getArgument(0)))
+                        .doThrow(new StorageException(503, "Service unavailable"))
+                        .when(reader).read(Mockito.any(ByteBuffer.class));
+            }
+            return reader;
+        }).when(storage).reader(Mockito.any(BlobId.class));
+        final File destination = destinationFolder.newFile(NAME);
+        final AtomicLong progress = new AtomicLong();
+
+        final long crc32c = new SlicedDownloader(storage, executor, 1, new BufferPool(64 * 1024, 4, true), retryPolicy,
+                null).download(storage.get(blob.getBlobId()), destination.toPath(),
+                data -> progress.addAndGet(data.remaining()));
+
+        Assert.assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+        Assert.assertEquals(blob.getCrc32c(), Checksums.encode(crc32c));
+        Assert.assertEquals(content.length, progress.get());
+        // The second reader continues after the bytes the first one wrote
+        Assert.assertEquals(Arrays.asList(0L, 64 * 1024L), seeks);
+    }
+
+    @Test(expected = StorageException.class)
+    public void testSliceFailure() throws IOException {
+        final Storage storage = SynchronizedStorage.wrap(LocalStorageHelper.getOptions().getService());
+        final BlobId blobId = storage.create(BlobInfo.newBuilder(BUCKET, NAME).build(), randomContent(1024)).getBlobId();
+        final Blob blob = storage.get(blobId);
+        storage.delete(blobId);
+
+        new SlicedDownloader(storage, executor, 4, new BufferPool(1024, 4, true), retryPolicy, null)
+                .download(blob, destinationFolder.newFile(NAME).toPath(), data -> {
+                });
+    }
+
+}
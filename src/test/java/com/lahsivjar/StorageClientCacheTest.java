@@ -0,0 +1,99 @@
+package com.lahsivjar;
+
+import com.google.cloud.storage.Storage;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StorageClientCacheTest {
+
+    private final List<PooledStorageClient> created = new ArrayList<>();
+
+    private PooledStorageClient newClient(StorageClientSettings settings) {
+        final PooledStorageClient client = Mockito.mock(PooledStorageClient.class);
+        Mockito.when(client.getStorage()).thenReturn(Mockito.mock(Storage.class));
+        created.add(client);
+        return client;
+    }
+
+    private static StorageClientSettings settings(String projectId) {
+        return new StorageClientSettings(projectId, 1000, 2000, 16, 1000, null);
+    }
+
+    @Test
+    public void testEqualSettingsShareClient() {
+        final StorageClientCache cache = new StorageClientCache(this::newClient, 0);
+
+        final Storage first = cache.acquire(settings("project"));
+        final Storage second = cache.acquire(settings("project"));
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, created.size());
+    }
+
+    @Test
+    public void testDifferentSettingsGetOwnClients() {
+        final StorageClientCache cache = new StorageClientCache(this::newClient, 0);
+
+        final Storage first = cache.acquire(settings("project"));
+        final Storage second = cache.acquire(settings("other-project"));
+        final Storage third = cache.acquire(new StorageClientSettings("project", 1000, 5000, 16, 1000, null));
+
+        Assert.assertNotSame(first, second);
+        Assert.assertNotSame(first, third);
+        Assert.assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testClosedWhenLastReferenceIsReleased() {
+        final StorageClientCache cache = new StorageClientCache(this::newClient, 0);
+        cache.acquire(settings("project"));
+        cache.acquire(settings("project"));
+
+        cache.release(settings("project"));
+        Mockito.verify(created.get(0), Mockito.never()).close();
+
+        cache.release(settings("project"));
+        Mockito.verify(created.get(0)).close();
+        Assert.assertEquals(0, cache.size());
+
+        cache.acquire(settings("project"));
+        Assert.assertEquals(2, created.size());
+    }
+
+    @Test
+    public void testClosedAfterIdleTimeout() throws InterruptedException {
+        final StorageClientCache cache = new StorageClientCache(this::newClient, 50);
+        cache.acquire(settings("project"));
+        cache.release(settings("project"));
+
+        Mockito.verify(created.get(0), Mockito.timeout(2000)).close();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testReacquireWithinIdleTimeoutKeepsClient() throws InterruptedException {
+        final StorageClientCache cache = new StorageClientCache(this::newClient, 200);
+        final Storage first = cache.acquire(settings("project"));
+        cache.release(settings("project"));
+
+        final Storage second = cache.acquire(settings("project"));
+        Thread.sleep(400);
+
+        Assert.assertSame(first, second);
+        Mockito.verify(created.get(0), Mockito.never()).close();
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testUnbalancedReleaseIsIgnored() {
+        final StorageClientCache cache = new StorageClientCache(this::newClient, 0);
+        cache.release(settings("project"));
+
+        Assert.assertEquals(0, cache.size());
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.lahsivjar;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.Storage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+// LocalStorageHelper's fake rpc is not thread safe, this serializes every call to it including the calls made
+// through channels. An optional latency is paid outside of the lock before each storage call to emulate network
+// round trips.
+final class SynchronizedStorage implements InvocationHandler {
+
+    private final Object delegate;
+    private final Object lock;
+    private final long latencyMillis;
+
+    private SynchronizedStorage(Object delegate, Object lock, long latencyMillis) {
+        this.delegate = delegate;
+        this.lock = lock;
+        this.latencyMillis = latencyMillis;
+    }
+
+    static Storage wrap(Storage storage) {
+        return wrap(storage, 0);
+    }
+
+    static Storage wrap(Storage storage, long latencyMillis) {
+        return proxy(Storage.class, new SynchronizedStorage(storage, new Object(), latencyMillis));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (this.latencyMillis > 0 && this.delegate instanceof Storage) {
+            Thread.sleep(this.latencyMillis);
+        }
+
+        final Object result;
+        synchronized (this.lock) {
+            try {
+                result = method.invoke(this.delegate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        if (result instanceof WriteChannel) {
+            return proxy(WriteChannel.class, new SynchronizedStorage(result, this.lock, 0));
+        } else if (result instanceof ReadChannel) {
+            return proxy(ReadChannel.class, new SynchronizedStorage(result, this.lock, 0));
+        }
+        return result;
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(SynchronizedStorage.class.getClassLoader(),
+                new Class<?>[]{type}, handler));
+    }
+}
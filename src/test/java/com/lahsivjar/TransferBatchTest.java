@@ -0,0 +1,83 @@
+package com.lahsivjar;
+
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.authorization.AuthorizationException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TransferBatchTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelismIsBounded() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        final TransferBatch batch = new TransferBatch(executor, 3);
+
+        for (int i = 0; i < 20; i++) {
+            batch.submit(() -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+                completed.incrementAndGet();
+            });
+        }
+        batch.await();
+
+        Assert.assertEquals(20, completed.get());
+        Assert.assertTrue(maxInFlight.get() <= 3);
+    }
+
+    @Test(expected = ResourceDoesNotExistException.class)
+    public void testSingleFailureIsRethrownAsIs() throws Exception {
+        final TransferBatch batch = new TransferBatch(executor, 2);
+        batch.submit(() -> {
+        });
+        batch.submit(() -> {
+            throw new ResourceDoesNotExistException("missing");
+        });
+        batch.await();
+    }
+
+    @Test
+    public void testAllFailuresAreReportedTogether() throws Exception {
+        final TransferBatch batch = new TransferBatch(executor, 2);
+        for (int i = 0; i < 5; i++) {
+            final int index = i;
+            batch.submit(() -> {
+                if (index % 2 == 0) {
+                    throw new TransferFailedException("failed " + index);
+                }
+            });
+        }
+
+        try {
+            batch.await();
+            Assert.fail("Expected failures to be reported");
+        } catch (TransferFailedException e) {
+            Assert.assertTrue(e.getMessage().startsWith("3 of 5 transfers failed"));
+            Assert.assertNotNull(e.getCause());
+            Assert.assertEquals(2, e.getSuppressed().length);
+        } catch (ResourceDoesNotExistException | AuthorizationException e) {
+            Assert.fail("Unexpected exception type " + e);
+        }
+    }
+
+}
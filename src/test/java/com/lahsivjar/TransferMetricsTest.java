@@ -0,0 +1,59 @@
+package com.lahsivjar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+public class TransferMetricsTest {
+
+    @Test
+    public void testRecordsOutcomesAndBytes() {
+        final TransferMetrics metrics = new TransferMetrics();
+        final long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(100);
+
+        metrics.record(TransferMetrics.Operation.GET, TransferMetrics.Outcome.SUCCESS, start, 1024);
+        metrics.record(TransferMetrics.Operation.GET, TransferMetrics.Outcome.NOT_FOUND, start, 0);
+        metrics.record(TransferMetrics.Operation.PUT, TransferMetrics.Outcome.FAILURE, start, 2048);
+
+        Assert.assertEquals(1L, (long) metrics.getCounts().get("get.success"));
+        Assert.assertEquals(1L, (long) metrics.getCounts().get("get.notFound"));
+        Assert.assertEquals(1L, (long) metrics.getCounts().get("put.failure"));
+        // Failed transfers move no bytes
+        Assert.assertEquals(1024L, (long) metrics.getBytes().get("get"));
+        Assert.assertEquals(0L, (long) metrics.getBytes().get("put"));
+        Assert.assertTrue(metrics.getThroughput().get("get") > 0);
+        Assert.assertTrue(metrics.getLatencies().get("get.p50") >= 100);
+    }
+
+    @Test
+    public void testCacheHitRates() {
+        final TransferMetrics metrics = new TransferMetrics();
+        metrics.onMetadataLookups(10);
+        metrics.onMetadataCacheMisses(3);
+        metrics.onDownloadCacheLookup(true);
+        metrics.onDownloadCacheLookup(false);
+        metrics.onRetry();
+
+        Assert.assertEquals(7, metrics.getMetadataCacheHits());
+        Assert.assertEquals(3, metrics.getMetadataCacheMisses());
+        Assert.assertEquals(1, metrics.getDownloadCacheHits());
+        Assert.assertEquals(1, metrics.getDownloadCacheMisses());
+        Assert.assertTrue(metrics.getSummary().contains("1 retries, metadata cache 7 hits 3 misses"));
+    }
+
+    @Test
+    public void testBucketMetricsAreRegistered() throws Exception {
+        final TransferMetrics metrics = TransferMetrics.forBucket("metrics-bucket");
+        Assert.assertSame(metrics, TransferMetrics.forBucket("metrics-bucket"));
+
+        final ObjectName name = new ObjectName("com.lahsivjar:type=TransferMetrics,bucket="
+                + ObjectName.quote("metrics-bucket"));
+        metrics.onRetry();
+        Assert.assertEquals(metrics.getRetries(),
+                ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Retries"));
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.lahsivjar;
+
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class UploadJournalTest {
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final BlobInfo BLOB_INFO = BlobInfo.newBuilder("fake-dummy-bucket", "large.tar.gz").build();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Storage storage = LocalStorageHelper.getOptions().getService();
+
+    // Starts an upload of the source and records it after the first chunk
+    private void interruptedUpload(UploadJournal journal, File source, String crc32c) throws IOException {
+        final WriteChannel writer = this.storage.writer(BLOB_INFO);
+        writer.setChunkSize(CHUNK_SIZE);
+        writer.write(ByteBuffer.wrap(Files.readAllBytes(source.toPath()), 0, CHUNK_SIZE));
+        journal.record(BLOB_INFO, source, crc32c, BLOB_INFO.getName(), CHUNK_SIZE, writer.capture());
+    }
+
+    @Test
+    public void testSessionIsResumed() throws IOException {
+        final Path directory = folder.getRoot().toPath().resolve("uploads");
+        final File source = CompositeUploaderTest.randomFile(folder.newFile("large.tar.gz"), 3 * CHUNK_SIZE + 17);
+        final byte[] content = Files.readAllBytes(source.toPath());
+        interruptedUpload(new UploadJournal(directory, this.storage::getOptions), source, "crc");
+
+        final UploadJournal.Session session = new UploadJournal(directory, this.storage::getOptions)
+                .find(BLOB_INFO, source, "crc");
+        Assert.assertNotNull(session);
+        Assert.assertEquals(BLOB_INFO.getName(), session.getBlobName());
+        Assert.assertEquals(CHUNK_SIZE, session.getOffset());
+        try (WriteChannel writer = session.restore()) {
+            writer.write(ByteBuffer.wrap(content, CHUNK_SIZE, content.length - CHUNK_SIZE));
+        }
+
+        Assert.assertArrayEquals(content, this.storage.readAllBytes(BLOB_INFO.getBlobId()));
+    }
+
+    @Test
+    public void testJournalLeavesOutServiceOptions() throws IOException {
+        final Path directory = folder.getRoot().toPath().resolve("uploads");
+        final File source = CompositeUploaderTest.randomFile(folder.newFile("large.tar.gz"), 2 * CHUNK_SIZE);
+        interruptedUpload(new UploadJournal(directory, this.storage::getOptions), source, "crc");
+
+        final File[] journals = directory.toFile().listFiles();
+        Assert.assertNotNull(journals);
+        Assert.assertEquals(1, journals.length);
+        final String journal = new String(Files.readAllBytes(journals[0].toPath()), StandardCharsets.ISO_8859_1);
+        Assert.assertFalse(journal.contains(this.storage.getOptions().getClass().getName()));
+        Assert.assertFalse(journal.contains(this.storage.getOptions().getProjectId()));
+    }
+
+    @Test
+    public void testChangedSourceIsNotResumed() throws IOException {
+        final Path directory = folder.getRoot().toPath().resolve("uploads");
+        final File source = CompositeUploaderTest.randomFile(folder.newFile("large.tar.gz"), 2 * CHUNK_SIZE);
+        final UploadJournal journal = new UploadJournal(directory, this.storage::getOptions);
+        interruptedUpload(journal, source, "crc");
+
+        Assert.assertNull(journal.find(BLOB_INFO, source, "other"));
+        // The stale session is dropped
+        Assert.assertEquals(Arrays.asList(), Arrays.asList(directory.toFile().list()));
+        Assert.assertNull(journal.find(BLOB_INFO, source, "crc"));
+    }
+
+}